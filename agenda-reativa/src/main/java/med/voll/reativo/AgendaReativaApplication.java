@@ -0,0 +1,17 @@
+package med.voll.reativo;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/*
+ * Porta de entrada não bloqueante para o agendamento de consultas (WebFlux + R2DBC).
+ * Expõe o mesmo contrato de POST /consultas da API, sobre o mesmo banco e com os mesmos DTOs e mensagens.
+ * */
+@SpringBootApplication
+public class AgendaReativaApplication {
+
+	public static void main(String[] args) {
+		SpringApplication.run(AgendaReativaApplication.class, args);
+	}
+
+}
@@ -0,0 +1,214 @@
+package med.voll.reativo.agenda;
+
+import jakarta.annotation.PostConstruct;
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.AgendaDeConsultas;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.DadosDetalhamentoConsulta;
+import med.voll.api.domain.consulta.validacoes.CustoValidacao;
+import med.voll.api.domain.consulta.validacoes.ValidadorMedicoComOutraConsultaNoMesmoHorario;
+import med.voll.api.domain.consulta.validacoes.ValidadorPacienteSemOutraConsultaNoDia;
+import med.voll.reativo.validacoes.EtapaValidacao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Agendamento em etapas não bloqueantes, na mesma ordem da AgendaDeConsultas da API:
+ * validações locais, uma unica consulta com tudo o que precisa ser verificado, validações sobre essa verificação,
+ * escolha do médico e insert. Agendamentos concorrentes no mesmo horario são barrados pelos indices unicos
+ * das migrations V8 e V10, traduzidos para as mesmas mensagens dos validadores. Quando o médico foi sorteado e
+ * outro agendamento ficou com ele, o agendamento é refeito sem ele, até MAX_SORTEIOS vezes.
+ * */
+@Service
+public class AgendaReativa {
+
+    private static final int MAX_SORTEIOS = 5;
+
+    //O primeiro médico livre da especialidade a partir de um id sorteado, pela chave primaria e sem ordenar a especialidade.
+    private static final String MEDICO_LIVRE_A_PARTIR_DO_PIVO = """
+            select m.id from medicos m
+            where
+            m.ativo = true
+            and
+            m.especialidade = :especialidade
+            and
+            m.id %s :pivo
+            and
+            m.id <> all(:descartados)
+            and
+            not exists(select 1 from consultas c where c.medico_id = m.id and c.data = :data and not c.cancelada)
+            order by m.id
+            limit 1
+            """;
+
+    @Autowired
+    private DatabaseClient banco;
+
+    @Autowired
+    private TransactionalOperator transacao;
+
+    @Autowired
+    private List<EtapaValidacao> etapas;
+
+    private List<EtapaValidacao> locais;
+
+    private List<EtapaValidacao> deContexto;
+
+    @PostConstruct
+    void inicializar() {
+        locais = etapas.stream().filter(e -> e.custo() == CustoValidacao.LOCAL).toList();
+        deContexto = etapas.stream().filter(e -> e.custo() != CustoValidacao.LOCAL).toList();
+    }
+
+    public Mono<DadosDetalhamentoConsulta> agendar(DadosAgendamentoConsulta dados) {
+        return Flux.fromIterable(locais)
+                .concatMap(etapa -> etapa.validar(dados, null))
+                .then(Mono.defer(() -> agendarSorteandoNovamente(dados, List.of())));
+    }
+
+    //Cada tentativa tem a sua transação: depois do erro do insert a transação do PostgreSQL não pode continuar.
+    private Mono<DadosDetalhamentoConsulta> agendarSorteandoNovamente(DadosAgendamentoConsulta dados, List<Long> descartados) {
+        return verificar(dados)
+                .flatMap(verificacao -> validarVerificacao(dados, verificacao))
+                .then(Mono.defer(() -> escolherMedico(dados, descartados)))
+                .flatMap(idMedico -> inserir(dados, idMedico)
+                        .onErrorMap(DataIntegrityViolationException.class, ex -> sorteadoOcupado(dados, idMedico, ex)))
+                .as(transacao::transactional)
+                .onErrorResume(MedicoSorteadoOcupado.class, ex -> descartados.size() + 1 < MAX_SORTEIOS
+                        ? agendarSorteandoNovamente(dados, incluir(descartados, ex.idMedico))
+                        : Mono.error(ex.getCause()))
+                .onErrorMap(DataIntegrityViolationException.class, AgendaReativa::traduzirRestricao);
+    }
+
+    private Mono<VerificacaoAgendamento> verificar(DadosAgendamentoConsulta dados) {
+        var dia = dados.data().toLocalDate();
+        var consulta = banco.sql("""
+                        select
+                        (select p.ativo from pacientes p where p.id = :idPaciente) as paciente_ativo,
+                        (select m.ativo from medicos m where m.id = :idMedico) as medico_ativo,
+                        exists(select 1 from consultas c where c.medico_id = :idMedico and c.data = :data and not c.cancelada) as medico_ocupado,
+                        exists(select 1 from consultas c where c.paciente_id = :idPaciente and c.data >= :inicioDia and c.data < :fimDia and not c.cancelada) as paciente_ocupado
+                        """)
+                .bind("idPaciente", dados.idPaciente())
+                .bind("data", dados.data())
+                .bind("inicioDia", dia.atStartOfDay())
+                .bind("fimDia", dia.plusDays(1).atStartOfDay());
+        consulta = dados.idMedico() != null ? consulta.bind("idMedico", dados.idMedico()) : consulta.bindNull("idMedico", Long.class);
+
+        return consulta
+                .map((linha, metadados) -> new VerificacaoAgendamento(
+                        linha.get("paciente_ativo", Boolean.class),
+                        linha.get("medico_ativo", Boolean.class),
+                        Boolean.TRUE.equals(linha.get("medico_ocupado", Boolean.class)),
+                        Boolean.TRUE.equals(linha.get("paciente_ocupado", Boolean.class))))
+                .one();
+    }
+
+    private Mono<Void> validarVerificacao(DadosAgendamentoConsulta dados, VerificacaoAgendamento verificacao) {
+        if (verificacao.pacienteAtivo() == null) {
+            return Mono.error(new ValidacaoExcepition(AgendaDeConsultas.PACIENTE_NAO_EXISTE));
+        }
+        if (dados.idMedico() != null && verificacao.medicoAtivo() == null) {
+            return Mono.error(new ValidacaoExcepition(AgendaDeConsultas.MEDICO_NAO_EXISTE));
+        }
+
+        return Flux.fromIterable(deContexto)
+                .concatMap(etapa -> etapa.validar(dados, verificacao))
+                .then();
+    }
+
+    /*
+     * Sorteia um id entre o menor e o maior de medicos (as pontas da chave primaria) e pega o primeiro médico livre
+     * da especialidade a partir dele, voltando ao inicio quando não há nenhum depois. Um médico logo depois de uma
+     * faixa de ids de outras especialidades tem mais chance, o que basta para espalhar os agendamentos.
+     * */
+    private Mono<Long> escolherMedico(DadosAgendamentoConsulta dados, List<Long> descartados) {
+        if (dados.idMedico() != null) {
+            return Mono.just(dados.idMedico());
+        }
+        if (dados.especialidade() == null) {
+            return Mono.error(new ValidacaoExcepition(AgendaDeConsultas.ESPECIALIDADE_OBRIGATORIA));
+        }
+
+        return banco.sql("select min(id) as menor, max(id) as maior from medicos")
+                .map((linha, metadados) -> {
+                    var menor = linha.get("menor", Long.class);
+                    var maior = linha.get("maior", Long.class);
+                    return menor == null ? 0L : ThreadLocalRandom.current().nextLong(menor, maior + 1);
+                })
+                .one()
+                .flatMap(pivo -> medicoLivre(dados, descartados, ">=", pivo)
+                        .switchIfEmpty(Mono.defer(() -> medicoLivre(dados, descartados, "<", pivo))))
+                .switchIfEmpty(Mono.error(() -> new ValidacaoExcepition(AgendaDeConsultas.NENHUM_MEDICO_DISPONIVEL)));
+    }
+
+    private Mono<Long> medicoLivre(DadosAgendamentoConsulta dados, List<Long> descartados, String comparacao, long pivo) {
+        return banco.sql(MEDICO_LIVRE_A_PARTIR_DO_PIVO.formatted(comparacao))
+                .bind("especialidade", dados.especialidade().name())
+                .bind("pivo", pivo)
+                .bind("descartados", descartados.toArray(Long[]::new))
+                .bind("data", dados.data())
+                .map((linha, metadados) -> linha.get("id", Long.class))
+                .one();
+    }
+
+    private Mono<DadosDetalhamentoConsulta> inserir(DadosAgendamentoConsulta dados, Long idMedico) {
+        return banco.sql("""
+                        insert into consultas(medico_id, paciente_id, data)
+                        values(:idMedico, :idPaciente, :data)
+                        returning id
+                        """)
+                .bind("idMedico", idMedico)
+                .bind("idPaciente", dados.idPaciente())
+                .bind("data", dados.data())
+                .map((linha, metadados) -> linha.get("id", Long.class))
+                .one()
+                .map(id -> new DadosDetalhamentoConsulta(id, idMedico, dados.idPaciente(), dados.data()));
+    }
+
+    //O médico sorteado foi agendado por outra requisição depois da escolha: o agendamento é refeito sem ele.
+    private static Throwable sorteadoOcupado(DadosAgendamentoConsulta dados, Long idMedico, DataIntegrityViolationException ex) {
+        var mensagem = String.valueOf(ex.getMostSpecificCause().getMessage()).toLowerCase();
+        if (dados.idMedico() == null && mensagem.contains(AgendaDeConsultas.RESTRICAO_MEDICO_NO_HORARIO)) {
+            return new MedicoSorteadoOcupado(idMedico, ex);
+        }
+        return ex;
+    }
+
+    private static List<Long> incluir(List<Long> descartados, Long idMedico) {
+        var novos = new ArrayList<>(descartados);
+        novos.add(idMedico);
+        return novos;
+    }
+
+    private static Throwable traduzirRestricao(DataIntegrityViolationException ex) {
+        var mensagem = String.valueOf(ex.getMostSpecificCause().getMessage()).toLowerCase();
+        if (mensagem.contains(AgendaDeConsultas.RESTRICAO_MEDICO_NO_HORARIO)) {
+            return new ValidacaoExcepition(ValidadorMedicoComOutraConsultaNoMesmoHorario.MENSAGEM);
+        }
+        if (mensagem.contains(AgendaDeConsultas.RESTRICAO_PACIENTE_NO_DIA)) {
+            return new ValidacaoExcepition(ValidadorPacienteSemOutraConsultaNoDia.MENSAGEM);
+        }
+        return ex;
+    }
+
+    private static class MedicoSorteadoOcupado extends RuntimeException {
+
+        private final Long idMedico;
+
+        MedicoSorteadoOcupado(Long idMedico, DataIntegrityViolationException causa) {
+            super(null, causa, false, false);
+            this.idMedico = idMedico;
+        }
+    }
+
+}
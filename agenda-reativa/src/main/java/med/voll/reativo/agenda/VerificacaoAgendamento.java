@@ -0,0 +1,6 @@
+package med.voll.reativo.agenda;
+
+//Mesma verificação de ConsultaRepository.verificarAgendamento da API; os ativos são null quando o registro não existe.
+public record VerificacaoAgendamento(Boolean pacienteAtivo, Boolean medicoAtivo,
+                                     boolean medicoOcupadoNoHorario, boolean pacienteComConsultaNoDia) {
+}
@@ -0,0 +1,27 @@
+package med.voll.reativo.controller;
+
+import jakarta.validation.Valid;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.DadosDetalhamentoConsulta;
+import med.voll.reativo.agenda.AgendaReativa;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("consultas")
+public class ConsultaController {
+
+    @Autowired
+    private AgendaReativa agenda;
+
+    @PostMapping
+    public Mono<ResponseEntity<DadosDetalhamentoConsulta>> agendar(@RequestBody @Valid DadosAgendamentoConsulta dados) {
+        return agenda.agendar(dados).map(ResponseEntity::ok);
+    }
+
+}
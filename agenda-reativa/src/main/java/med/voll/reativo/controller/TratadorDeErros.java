@@ -0,0 +1,42 @@
+package med.voll.reativo.controller;
+
+import med.voll.api.domain.ValidacaoExcepition;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
+
+//Mesmas respostas de erro da API.
+@RestControllerAdvice
+public class TratadorDeErros {
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity tratarErro400(WebExchangeBindException ex) {
+        return ResponseEntity.badRequest().body(ex.getFieldErrors().stream().map(DadosErroValidacao::new).toList());
+    }
+
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity tratarErro400(ServerWebInputException ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
+    @ExceptionHandler(ValidacaoExcepition.class)
+    public ResponseEntity tratarErroRegraDeNegocio(ValidacaoExcepition ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity tratarErro500(Exception ex) {
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro: " + ex.getLocalizedMessage());
+    }
+
+    private record DadosErroValidacao(String campo, String mensagem) {
+        public DadosErroValidacao(FieldError error) {
+            this(error.getField(), error.getDefaultMessage());
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package med.voll.reativo.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/*
+ * Aceita os mesmos tokens emitidos pelo /login da API (mesmo segredo e emissor).
+ * Só a assinatura e a validade são conferidas, a verificação é CPU pura e roda no proprio event loop.
+ * */
+@Component
+public class FiltroToken implements WebFilter {
+
+    private static final String ISSUER = "API Voll.med";
+    private static final String PREFIXO = "Bearer ";
+
+    @Value("${api.security.token.secret}")
+    private String secret;
+
+    private JWTVerifier verificador;
+
+    @PostConstruct
+    void inicializar() {
+        verificador = JWT.require(Algorithm.HMAC256(secret))
+                .withIssuer(ISSUER)
+                .build();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var autorizacao = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (autorizacao == null || !autorizacao.startsWith(PREFIXO)) {
+            return negar(exchange);
+        }
+
+        try {
+            verificador.verify(autorizacao.substring(PREFIXO.length()));
+        } catch (JWTVerificationException ex) {
+            return negar(exchange);
+        }
+        return chain.filter(exchange);
+    }
+
+    private static Mono<Void> negar(ServerWebExchange exchange) {
+        exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN);
+        return exchange.getResponse().setComplete();
+    }
+
+}
@@ -0,0 +1,30 @@
+package med.voll.reativo.validacoes;
+
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.validacoes.CustoValidacao;
+import med.voll.api.domain.consulta.validacoes.ValidadorHorarioAntecedencia;
+import med.voll.reativo.agenda.VerificacaoAgendamento;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@Component
+public class EtapaHorarioAntecedencia implements EtapaValidacao {
+
+    @Override
+    public Mono<Void> validar(DadosAgendamentoConsulta dados, VerificacaoAgendamento verificacao) {
+        if (Duration.between(LocalDateTime.now(), dados.data()).toMinutes() < 30) {
+            return Mono.error(new ValidacaoExcepition(ValidadorHorarioAntecedencia.MENSAGEM));
+        }
+        return Mono.empty();
+    }
+
+    @Override
+    public CustoValidacao custo() {
+        return CustoValidacao.LOCAL;
+    }
+
+}
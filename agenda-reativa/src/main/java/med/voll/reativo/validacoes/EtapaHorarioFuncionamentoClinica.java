@@ -0,0 +1,29 @@
+package med.voll.reativo.validacoes;
+
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.validacoes.CustoValidacao;
+import med.voll.api.domain.consulta.validacoes.ValidadorHorarioFuncionamentoClinica;
+import med.voll.reativo.agenda.VerificacaoAgendamento;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.DayOfWeek;
+
+@Component
+public class EtapaHorarioFuncionamentoClinica implements EtapaValidacao {
+
+    @Override
+    public Mono<Void> validar(DadosAgendamentoConsulta dados, VerificacaoAgendamento verificacao) {
+        if (dados.data().getDayOfWeek() == DayOfWeek.SUNDAY || dados.data().getHour() < 7 || dados.data().getHour() > 18) {
+            return Mono.error(new ValidacaoExcepition(ValidadorHorarioFuncionamentoClinica.MENSAGEM));
+        }
+        return Mono.empty();
+    }
+
+    @Override
+    public CustoValidacao custo() {
+        return CustoValidacao.LOCAL;
+    }
+
+}
@@ -0,0 +1,21 @@
+package med.voll.reativo.validacoes;
+
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.validacoes.ValidadorMedicoComOutraConsultaNoMesmoHorario;
+import med.voll.reativo.agenda.VerificacaoAgendamento;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+@Component
+public class EtapaMedicoLivreNoHorario implements EtapaValidacao {
+
+    @Override
+    public Mono<Void> validar(DadosAgendamentoConsulta dados, VerificacaoAgendamento verificacao) {
+        if (verificacao.medicoOcupadoNoHorario()) {
+            return Mono.error(new ValidacaoExcepition(ValidadorMedicoComOutraConsultaNoMesmoHorario.MENSAGEM));
+        }
+        return Mono.empty();
+    }
+
+}
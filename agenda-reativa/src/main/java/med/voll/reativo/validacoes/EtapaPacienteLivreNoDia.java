@@ -0,0 +1,21 @@
+package med.voll.reativo.validacoes;
+
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.validacoes.ValidadorPacienteSemOutraConsultaNoDia;
+import med.voll.reativo.agenda.VerificacaoAgendamento;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+@Component
+public class EtapaPacienteLivreNoDia implements EtapaValidacao {
+
+    @Override
+    public Mono<Void> validar(DadosAgendamentoConsulta dados, VerificacaoAgendamento verificacao) {
+        if (verificacao.pacienteComConsultaNoDia()) {
+            return Mono.error(new ValidacaoExcepition(ValidadorPacienteSemOutraConsultaNoDia.MENSAGEM));
+        }
+        return Mono.empty();
+    }
+
+}
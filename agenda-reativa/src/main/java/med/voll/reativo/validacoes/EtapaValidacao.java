@@ -0,0 +1,20 @@
+package med.voll.reativo.validacoes;
+
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.validacoes.CustoValidacao;
+import med.voll.reativo.agenda.VerificacaoAgendamento;
+import reactor.core.publisher.Mono;
+
+/*
+ * Versão não bloqueante dos validadores da API. As etapas LOCAL recebem a verificação null e rodam antes
+ * da consulta ao banco; as de CONTEXTO só leem a verificação, então nenhuma etapa faz I/O propria.
+ * */
+public interface EtapaValidacao {
+
+    Mono<Void> validar(DadosAgendamentoConsulta dados, VerificacaoAgendamento verificacao);
+
+    default CustoValidacao custo() {
+        return CustoValidacao.CONTEXTO;
+    }
+
+}
@@ -0,0 +1,131 @@
+package med.voll.reativo.carga;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Carga de agendamentos para comparar a API (MVC) com a agenda reativa no ponto de saturação.
+ * Mantem "concorrencia" requisições sempre em voo contra cada endereço durante "duracao" segundos
+ * e imprime vazão e latencias p50/p99/p999. As duas aplicações aceitam o mesmo token do /login da API.
+ *
+ * mvn -f agenda-reativa test-compile exec:java -Dexec.classpathScope=test
+ *     -Dexec.mainClass=med.voll.reativo.carga.CargaAgendamento
+ *     -Dtoken=... -Denderecos=http://localhost:8080,http://localhost:8081 -Dconcorrencia=2000 -Dduracao=60
+ * */
+public class CargaAgendamento {
+
+    private static final String[] ESPECIALIDADES = {"ORTOPEDIA", "CARDIOLOGIA", "GINECOLOGIA", "DERMATOLOGIA"};
+
+    public static void main(String[] args) throws InterruptedException {
+        var token = System.getProperty("token");
+        var enderecos = System.getProperty("enderecos", "http://localhost:8080,http://localhost:8081").split(",");
+        var concorrencia = Integer.getInteger("concorrencia", 2000);
+        var duracao = Duration.ofSeconds(Integer.getInteger("duracao", 60));
+        var pacientes = Integer.getInteger("pacientes", 100000);
+
+        for (var endereco : enderecos) {
+            new CargaAgendamento(endereco, token, pacientes).executar(concorrencia, duracao);
+        }
+    }
+
+    private final HttpClient cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final String endereco;
+    private final String token;
+    private final int pacientes;
+
+    private final Map<Integer, AtomicLong> respostasPorStatus = new ConcurrentHashMap<>();
+    private final AtomicLong erros = new AtomicLong();
+    private long[] latencias = new long[1 << 20];
+    private int totalLatencias;
+
+    private CargaAgendamento(String endereco, String token, int pacientes) {
+        this.endereco = endereco;
+        this.token = token;
+        this.pacientes = pacientes;
+    }
+
+    private void executar(int concorrencia, Duration duracao) throws InterruptedException {
+        var fim = System.nanoTime() + duracao.toNanos();
+        var encerrados = new CountDownLatch(concorrencia);
+        for (int i = 0; i < concorrencia; i++) {
+            enviar(fim, encerrados);
+        }
+        encerrados.await();
+
+        long[] ordenadas;
+        synchronized (this) {
+            ordenadas = Arrays.copyOf(latencias, totalLatencias);
+        }
+        Arrays.sort(ordenadas);
+        System.out.printf("%s: %d requisições, %.0f req/s, p50=%.1fms p99=%.1fms p999=%.1fms, status=%s, falhas=%d%n",
+                endereco, ordenadas.length, ordenadas.length / (double) duracao.toSeconds(),
+                percentil(ordenadas, 0.50), percentil(ordenadas, 0.99), percentil(ordenadas, 0.999),
+                respostasPorStatus, erros.get());
+    }
+
+    //Cada "cliente" envia a proxima requisição assim que recebe a resposta da anterior.
+    private void enviar(long fim, CountDownLatch encerrados) {
+        if (System.nanoTime() >= fim) {
+            encerrados.countDown();
+            return;
+        }
+
+        var inicio = System.nanoTime();
+        cliente.sendAsync(novaRequisicao(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((resposta, erro) -> {
+                    if (erro != null) {
+                        erros.incrementAndGet();
+                    } else {
+                        registrar(resposta.statusCode(), System.nanoTime() - inicio);
+                    }
+                    enviar(fim, encerrados);
+                });
+    }
+
+    private HttpRequest novaRequisicao() {
+        var aleatorio = ThreadLocalRandom.current();
+        var dia = LocalDate.now().plusDays(1 + aleatorio.nextInt(60));
+        if (dia.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            dia = dia.plusDays(1);
+        }
+        var corpo = """
+                {"idPaciente": %d, "data": "%sT%02d:00:00", "especialidade": "%s"}
+                """.formatted(aleatorio.nextInt(1, pacientes + 1), dia, 7 + aleatorio.nextInt(12),
+                ESPECIALIDADES[aleatorio.nextInt(ESPECIALIDADES.length)]);
+
+        return HttpRequest.newBuilder(URI.create(endereco + "/consultas"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(corpo))
+                .build();
+    }
+
+    private synchronized void registrar(int status, long latencia) {
+        respostasPorStatus.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+        if (totalLatencias == latencias.length) {
+            latencias = Arrays.copyOf(latencias, latencias.length * 2);
+        }
+        latencias[totalLatencias++] = latencia;
+    }
+
+    private static double percentil(long[] ordenadas, double percentil) {
+        if (ordenadas.length == 0) {
+            return 0;
+        }
+        var indice = (int) Math.min(ordenadas.length - 1, Math.ceil(percentil * ordenadas.length) - 1);
+        return ordenadas[Math.max(0, indice)] / 1_000_000.0;
+    }
+
+}
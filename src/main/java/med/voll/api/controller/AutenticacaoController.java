@@ -4,6 +4,7 @@ import jakarta.validation.Valid;
 import med.voll.api.domain.usuario.DadosAutenticacao;
 import med.voll.api.domain.usuario.Usuario;
 import med.voll.api.infra.security.DadosTokenJWT;
+import med.voll.api.infra.security.ExecutorLogin;
 import med.voll.api.infra.security.TokenService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -14,6 +15,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.concurrent.CompletableFuture;
+
 /*
 * Controller responsavel por realizar autenticação do usuario.
 * */
@@ -27,16 +30,21 @@ public class AutenticacaoController {
     @Autowired
     private TokenService tokenService;
 
-    @PostMapping
-    public ResponseEntity efetuarLogin(@RequestBody @Valid DadosAutenticacao dados) {
+    @Autowired
+    private ExecutorLogin executorLogin;
 
-        var authenticationToken = new UsernamePasswordAuthenticationToken(dados.login(), dados.senha());
+    //A autenticação roda no executor de login e a thread do Tomcat é liberada enquanto o hash da senha é calculado.
+    @PostMapping
+    public CompletableFuture<ResponseEntity> efetuarLogin(@RequestBody @Valid DadosAutenticacao dados) {
+        return executorLogin.executar(() -> {
+            var authenticationToken = new UsernamePasswordAuthenticationToken(dados.login(), dados.senha());
 
-        var authentication = manager.authenticate(authenticationToken);
+            var authentication = manager.authenticate(authenticationToken);
 
-        var tokenJWT = tokenService.gerarToken((Usuario) authentication.getPrincipal());
+            var tokenJWT = tokenService.gerarToken((Usuario) authentication.getPrincipal());
 
-        return ResponseEntity.ok(new DadosTokenJWT(tokenJWT));
+            return ResponseEntity.ok(new DadosTokenJWT(tokenJWT));
+        });
     }
 
 }
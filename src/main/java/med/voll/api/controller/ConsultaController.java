@@ -1,29 +1,139 @@
 package med.voll.api.controller;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import med.voll.api.domain.DadosPaginaCursor;
 import med.voll.api.domain.consulta.AgendaDeConsultas;
 import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
 import med.voll.api.domain.consulta.DadosDetalhamentoConsulta;
+import med.voll.api.domain.consulta.DadosListagemConsulta;
+import med.voll.api.domain.consulta.DadosResultadoAgendamento;
+import med.voll.api.domain.consulta.ListagemDeConsultas;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
 @RestController
 @RequestMapping("consultas")
 public class ConsultaController {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     @Autowired
     private AgendaDeConsultas agenda;
 
+    @Autowired
+    private ListagemDeConsultas listagem;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${api.agenda.lote.tamanho}")
+    private int tamanhoLote;
+
+    //Sem @Transactional: a AgendaDeConsultas abre uma transação por tentativa do agendamento.
     @PostMapping
-    @Transactional
     public ResponseEntity agendar (@RequestBody @Valid DadosAgendamentoConsulta dados){
         var dto = agenda.agendar(dados);
         return ResponseEntity.ok(dto);
     }
+
+    //Agendamento em lote a partir de uma lista json. Cada bloco de tamanhoLote itens é gravado em uma transação.
+    @PostMapping(path = "/lote", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<DadosResultadoAgendamento>> agendarLote(@RequestBody List<DadosAgendamentoConsulta> dados) {
+        var resultados = new ArrayList<DadosResultadoAgendamento>(dados.size());
+        for (int inicio = 0; inicio < dados.size(); inicio += tamanhoLote) {
+            var bloco = dados.subList(inicio, Math.min(dados.size(), inicio + tamanhoLote));
+            resultados.addAll(agenda.agendarLote(bloco, inicio));
+        }
+        return ResponseEntity.ok(resultados);
+    }
+
+    //Agendamento em lote a partir de um json por linha (NDJSON), lido aos poucos sem carregar o corpo inteiro em memoria.
+    @PostMapping(path = "/lote", consumes = APPLICATION_NDJSON)
+    public ResponseEntity<List<DadosResultadoAgendamento>> agendarLoteNdjson(HttpServletRequest request) throws IOException {
+        var resultados = new ArrayList<DadosResultadoAgendamento>();
+        var bloco = new ArrayList<DadosAgendamentoConsulta>(tamanhoLote);
+        var inicio = 0;
+
+        try (var leitor = request.getReader()) {
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                if (linha.isBlank()) {
+                    continue;
+                }
+
+                bloco.add(lerLinha(linha));
+                if (bloco.size() == tamanhoLote) {
+                    resultados.addAll(agenda.agendarLote(bloco, inicio));
+                    inicio += bloco.size();
+                    bloco.clear();
+                }
+            }
+        }
+
+        if (!bloco.isEmpty()) {
+            resultados.addAll(agenda.agendarLote(bloco, inicio));
+        }
+        return ResponseEntity.ok(resultados);
+    }
+
+    //Agenda do médico entre inicio e fim (padrão: os proximos 7 dias), paginada pelo proximoCursor da resposta.
+    @GetMapping("/medicos/{id}")
+    public ResponseEntity<DadosPaginaCursor<DadosListagemConsulta>> agendaDoMedico(@PathVariable Long id,
+                                                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+                                                                                  @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim,
+                                                                                  @RequestParam(required = false) String cursor,
+                                                                                  @RequestParam(defaultValue = "20") int tamanho) {
+        inicio = inicio == null ? LocalDate.now() : inicio;
+        fim = fim == null ? inicio.plusDays(6) : fim;
+        return ResponseEntity.ok(listagem.agendaDoMedico(id, inicio, fim, cursor, tamanho));
+    }
+
+    @GetMapping("/pacientes/{id}")
+    public ResponseEntity<DadosPaginaCursor<DadosListagemConsulta>> historicoDoPaciente(@PathVariable Long id,
+                                                                                       @RequestParam(required = false) String cursor,
+                                                                                       @RequestParam(defaultValue = "20") int tamanho) {
+        return ResponseEntity.ok(listagem.historicoDoPaciente(id, cursor, tamanho));
+    }
+
+    @GetMapping("/dia/{dia}")
+    public ResponseEntity<DadosPaginaCursor<DadosListagemConsulta>> consultasDoDia(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dia,
+                                                                                  @RequestParam(required = false) String cursor,
+                                                                                  @RequestParam(defaultValue = "20") int tamanho) {
+        return ResponseEntity.ok(listagem.consultasDoDia(dia, cursor, tamanho));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity cancelar(@PathVariable Long id) {
+        agenda.cancelar(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    //Linhas que não são um json valido viram null e são rejeitadas no lote sem interromper os demais itens.
+    private DadosAgendamentoConsulta lerLinha(String linha) {
+        try {
+            return objectMapper.readValue(linha, DadosAgendamentoConsulta.class);
+        } catch (JsonProcessingException ex) {
+            return null;
+        }
+    }
 }
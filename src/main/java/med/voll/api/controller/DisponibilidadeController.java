@@ -0,0 +1,59 @@
+package med.voll.api.controller;
+
+import med.voll.api.domain.consulta.CalendarioDisponibilidade;
+import med.voll.api.domain.consulta.DadosHorarioLivre;
+import med.voll.api.domain.medico.Especialidade;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+//Horarios livres a partir do calendario em memoria, ex: /disponibilidade/especialidades/CARDIOLOGIA?inicio=2022-10-10&fim=2022-10-15
+@RestController
+@RequestMapping("disponibilidade")
+public class DisponibilidadeController {
+
+    @Autowired
+    private CalendarioDisponibilidade calendario;
+
+    @GetMapping("/medicos/{id}")
+    public ResponseEntity<List<LocalDateTime>> horariosDoMedico(@PathVariable Long id,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+                                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim) {
+        if (!calendario.disponivel()) {
+            return indisponivel();
+        }
+
+        inicio = inicio == null ? LocalDate.now() : inicio;
+        fim = fim == null ? inicio.plusDays(6) : fim;
+        return ResponseEntity.ok(calendario.horariosLivresDoMedico(id, inicio, fim));
+    }
+
+    @GetMapping("/especialidades/{especialidade}")
+    public ResponseEntity<List<DadosHorarioLivre>> horariosDaEspecialidade(@PathVariable Especialidade especialidade,
+                                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+                                                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim) {
+        if (!calendario.disponivel()) {
+            return indisponivel();
+        }
+
+        inicio = inicio == null ? LocalDate.now() : inicio;
+        fim = fim == null ? inicio.plusDays(6) : fim;
+        return ResponseEntity.ok(calendario.horariosLivresDaEspecialidade(especialidade, inicio, fim));
+    }
+
+    //Enquanto o calendario e o indice de ocupação carregam na subida da aplicação.
+    private static <T> ResponseEntity<T> indisponivel() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").build();
+    }
+
+}
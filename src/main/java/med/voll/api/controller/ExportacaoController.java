@@ -0,0 +1,51 @@
+package med.voll.api.controller;
+
+import med.voll.api.infra.exportacao.ExportacaoService;
+import med.voll.api.infra.exportacao.FormatoExportacao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+
+//Exportações escritas direto na resposta enquanto as linhas são lidas do banco, ex: /exportacoes/medicos?formato=CSV&desde=2022-10-01T00:00
+@RestController
+@RequestMapping("exportacoes")
+public class ExportacaoController {
+
+    @Autowired
+    private ExportacaoService exportacao;
+
+    @GetMapping("/medicos")
+    public ResponseEntity<StreamingResponseBody> exportarMedicos(@RequestParam(defaultValue = "NDJSON") FormatoExportacao formato,
+                                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde) {
+        return resposta("medicos", formato, saida -> exportacao.exportarMedicos(desde, formato, saida));
+    }
+
+    @GetMapping("/pacientes")
+    public ResponseEntity<StreamingResponseBody> exportarPacientes(@RequestParam(defaultValue = "NDJSON") FormatoExportacao formato,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde) {
+        return resposta("pacientes", formato, saida -> exportacao.exportarPacientes(desde, formato, saida));
+    }
+
+    @GetMapping("/consultas")
+    public ResponseEntity<StreamingResponseBody> exportarConsultas(@RequestParam(defaultValue = "NDJSON") FormatoExportacao formato,
+                                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde) {
+        return resposta("consultas", formato, saida -> exportacao.exportarConsultas(desde, formato, saida));
+    }
+
+    private ResponseEntity<StreamingResponseBody> resposta(String nome, FormatoExportacao formato, StreamingResponseBody corpo) {
+        var arquivo = nome + (formato == FormatoExportacao.CSV ? ".csv" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formato.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + arquivo + "\"")
+                .body(corpo);
+    }
+}
@@ -0,0 +1,40 @@
+package med.voll.api.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import med.voll.api.infra.importacao.DadosResultadoImportacao;
+import med.voll.api.infra.importacao.FormatoImportacao;
+import med.voll.api.infra.importacao.ImportacaoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+//Importação de cadastros com o corpo em CSV (text/csv) ou NDJSON (application/x-ndjson), lido aos poucos sem carregar o arquivo
+//inteiro em memoria. A resposta traz o total de linhas, as importadas e o erro de cada linha recusada.
+@RestController
+@RequestMapping("importacoes")
+public class ImportacaoController {
+
+    private static final String TEXT_CSV = "text/csv";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    @Autowired
+    private ImportacaoService importacao;
+
+    @PostMapping(path = "/medicos", consumes = {TEXT_CSV, APPLICATION_NDJSON})
+    public ResponseEntity<DadosResultadoImportacao> importarMedicos(HttpServletRequest request) throws IOException {
+        try (var leitor = request.getReader()) {
+            return ResponseEntity.ok(importacao.importarMedicos(FormatoImportacao.doContentType(request.getContentType()), leitor));
+        }
+    }
+
+    @PostMapping(path = "/pacientes", consumes = {TEXT_CSV, APPLICATION_NDJSON})
+    public ResponseEntity<DadosResultadoImportacao> importarPacientes(HttpServletRequest request) throws IOException {
+        try (var leitor = request.getReader()) {
+            return ResponseEntity.ok(importacao.importarPacientes(FormatoImportacao.doContentType(request.getContentType()), leitor));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package med.voll.api.controller;
+
+import jakarta.validation.Valid;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.DadosReserva;
+import med.voll.api.domain.consulta.ReservasAgenda;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+//Agendamento com gravação posterior: 202 com o id da reserva, a situação fica em GET /reservas/{id}.
+@RestController
+@RequestMapping("reservas")
+@ConditionalOnProperty(name = "api.agenda.reservas.habilitado", havingValue = "true")
+public class ReservaController {
+
+    @Autowired
+    private ReservasAgenda reservas;
+
+    @PostMapping
+    public ResponseEntity<DadosReserva> reservar(@RequestBody @Valid DadosAgendamentoConsulta dados, UriComponentsBuilder uriBuilder) {
+        //Enquanto as reservas pendentes do journal são recuperadas na subida da aplicação.
+        if (!reservas.disponivel()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").build();
+        }
+
+        var reserva = reservas.reservar(dados);
+        var uri = uriBuilder.path("/reservas/{id}").buildAndExpand(reserva.id()).toUri();
+        return ResponseEntity.accepted().location(uri).body(reserva);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<DadosReserva> detalhar(@PathVariable String id) {
+        return ResponseEntity.ok(reservas.buscar(id));
+    }
+
+}
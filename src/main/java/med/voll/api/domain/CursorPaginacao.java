@@ -0,0 +1,28 @@
+package med.voll.api.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/*
+ * Posição de uma listagem ordenada por (nome, id), usada na paginação por cursor (keyset).
+ * Para o cliente ela é um token opaco: o id e o nome do ultimo registro da pagina em Base64 url-safe.
+ * As listagens de consultas ordenam por (data, id) e guardam a data em ISO no lugar do nome.
+ * */
+public record CursorPaginacao(String nome, Long id) {
+
+    public String codificar() {
+        var texto = id + ":" + nome;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CursorPaginacao decodificar(String token) {
+        try {
+            var texto = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            var separador = texto.indexOf(':');
+            return new CursorPaginacao(texto.substring(separador + 1), Long.valueOf(texto.substring(0, separador)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new ValidacaoExcepition("Cursor de paginação inválido!");
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package med.voll.api.domain;
+
+import java.util.List;
+import java.util.function.Function;
+
+/*
+ * Pagina de uma listagem por cursor. O proximoCursor é null na ultima pagina.
+ * Diferente do Page, não traz o total de registros, por isso não precisa do count(*).
+ * */
+public record DadosPaginaCursor<T>(List<T> conteudo, String proximoCursor) {
+
+    //Recebe tamanho + 1 registros: o excedente só indica que existe uma proxima pagina.
+    public static <T> DadosPaginaCursor<T> de(List<T> registros, int tamanho, Function<T, CursorPaginacao> cursor) {
+        if (registros.size() <= tamanho) {
+            return new DadosPaginaCursor<>(registros, null);
+        }
+
+        var conteudo = registros.subList(0, tamanho);
+        return new DadosPaginaCursor<>(conteudo, cursor.apply(conteudo.get(tamanho - 1)).codificar());
+    }
+
+}
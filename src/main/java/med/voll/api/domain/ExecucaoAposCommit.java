@@ -0,0 +1,30 @@
+package med.voll.api.domain;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+ * Executa uma ação somente depois que a transação atual for confirmada.
+ * Usado para atualizar as estruturas em memoria apenas com dados que realmente foram gravados no banco.
+ * Fora de uma transação a ação é executada na hora.
+ * */
+public final class ExecucaoAposCommit {
+
+    private ExecucaoAposCommit() {
+    }
+
+    public static void executar(Runnable acao) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            acao.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                acao.run();
+            }
+        });
+    }
+
+}
@@ -1,7 +1,20 @@
 package med.voll.api.domain;
 
 public class ValidacaoExcepition extends RuntimeException {
+
+    //Nome do validador que recusou o agendamento, preenchido pela CadeiaValidadores e usado só nas metricas.
+    private String validador;
+
     public ValidacaoExcepition(String mensagem) {
         super(mensagem);
     }
+
+    public ValidacaoExcepition comValidador(String validador) {
+        this.validador = validador;
+        return this;
+    }
+
+    public String getValidador() {
+        return validador;
+    }
 }
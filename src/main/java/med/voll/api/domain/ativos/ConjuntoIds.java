@@ -0,0 +1,54 @@
+package med.voll.api.domain.ativos;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Conjunto de ids em um bitmap, um bit por id. Os ids vêm de IDENTITY e são densos, então o bitmap simples já é
+ * compacto (1,2 MB para 10 milhões de ids) e a leitura é um acesso ao array, sem trava.
+ * As escritas são sincronizadas e, quando o id não cabe, publicam um array maior com o conteudo copiado.
+ * */
+final class ConjuntoIds {
+
+    static final long MAIOR_ID = Integer.MAX_VALUE;
+
+    private volatile AtomicLongArray palavras = new AtomicLongArray(1024);
+
+    boolean contem(long id) {
+        if (id < 0 || id > MAIOR_ID) {
+            return false;
+        }
+        var atual = palavras;
+        var indice = (int) (id >>> 6);
+        return indice < atual.length() && (atual.get(indice) & (1L << id)) != 0;
+    }
+
+    //Retorna false para ids fora do intervalo suportado.
+    synchronized boolean alterar(long id, boolean presente) {
+        if (id < 0 || id > MAIOR_ID) {
+            return false;
+        }
+
+        var indice = (int) (id >>> 6);
+        var atual = palavras;
+        if (indice >= atual.length()) {
+            if (!presente) {
+                return true;
+            }
+            var maior = new AtomicLongArray((int) Math.min(Math.max(indice + 1L, atual.length() * 2L), (MAIOR_ID >>> 6) + 1));
+            for (int i = 0; i < atual.length(); i++) {
+                maior.set(i, atual.get(i));
+            }
+            palavras = maior;
+            atual = maior;
+        }
+
+        var bit = 1L << id;
+        if (presente) {
+            atual.getAndUpdate(indice, palavra -> palavra | bit);
+        } else {
+            atual.getAndUpdate(indice, palavra -> palavra & ~bit);
+        }
+        return true;
+    }
+
+}
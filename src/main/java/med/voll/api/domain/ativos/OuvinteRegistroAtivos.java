@@ -0,0 +1,140 @@
+package med.voll.api.domain.ativos;
+
+import jakarta.annotation.PreDestroy;
+import med.voll.api.domain.consulta.IndiceOcupacaoAgenda;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Carrega o RegistroAtivos na subida e, no PostgreSQL, mantem uma conexão em LISTEN no canal registro_ativos
+ * aplicando as notificações de todas as instancias. O LISTEN é feito antes da carga, assim nenhuma alteração
+ * commitada durante a leitura das tabelas se perde. Se a conexão cair o registro é invalidado (as consultas voltam
+ * ao banco) e carregado de novo depois da reconexão.
+ *
+ * A mesma conexão ouve o canal consultas_agenda (trigger da V14) e mantem o IndiceOcupacaoAgenda, carregado depois
+ * do LISTEN e invalidado junto com o registro quando a conexão cai.
+ *
+ * A cada RegistroAtivos.intervaloConfirmacao() o ouvinte envia pelo canal uma confirmação com o id desta instancia e
+ * o instante do envio. As notificações chegam na ordem dos commits, então quando a confirmação volta todas as
+ * alterações commitadas antes dela já foram aplicadas e o registro é confirmado até aquele instante.
+ *
+ * A conexão é aberta pelo DriverManager com a url e o usuario de spring.datasource, fora do pool: uma conexão do
+ * Hikari presa no LISTEN tiraria uma das maximum-pool-size das requisições e seria encerrada pelo max-lifetime.
+ * Cada instancia usa então uma conexão a mais no PostgreSQL, que entra na conta do max_connections.
+ * */
+@Component
+public class OuvinteRegistroAtivos {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OuvinteRegistroAtivos.class);
+
+    private static final String CONFIRMACAO = "C:";
+
+    private static final long ESPERA_RECONEXAO_MS = 5000;
+
+    @Autowired
+    private RegistroAtivos registro;
+
+    @Autowired
+    private IndiceOcupacaoAgenda indiceOcupacao;
+
+    @Autowired
+    private DataSourceProperties propriedades;
+
+    private volatile boolean encerrado;
+
+    //Separa as confirmações desta instancia das enviadas pelas demais, que são ignoradas.
+    private final String prefixoConfirmacao = CONFIRMACAO + UUID.randomUUID() + ":";
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!registro.notificacoesPeloBanco()) {
+            registro.carregar();
+            return;
+        }
+
+        var thread = new Thread(this::ouvir, "registro-ativos");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void encerrar() {
+        encerrado = true;
+    }
+
+    private void ouvir() {
+        while (!encerrado) {
+            try (var conexao = DriverManager.getConnection(propriedades.determineUrl(),
+                    propriedades.determineUsername(), propriedades.determinePassword())) {
+                try (var comando = conexao.createStatement()) {
+                    comando.execute("listen " + RegistroAtivos.CANAL);
+                    comando.execute("listen " + IndiceOcupacaoAgenda.CANAL);
+                }
+                registro.carregar();
+                indiceOcupacao.carregar();
+
+                var notificacoes = conexao.unwrap(PGConnection.class);
+                var intervalo = registro.intervaloConfirmacao().toNanos();
+                var proximaConfirmacao = System.nanoTime();
+                try (var confirmacao = conexao.prepareStatement("select pg_notify(?, ?)")) {
+                    while (!encerrado) {
+                        var agora = System.nanoTime();
+                        if (agora - proximaConfirmacao >= 0) {
+                            confirmacao.setString(1, RegistroAtivos.CANAL);
+                            confirmacao.setString(2, prefixoConfirmacao + agora);
+                            confirmacao.execute();
+                            proximaConfirmacao = agora + intervalo;
+                        }
+
+                        //Com 0 o getNotifications esperaria para sempre.
+                        var espera = Math.max(1, TimeUnit.NANOSECONDS.toMillis(proximaConfirmacao - System.nanoTime()));
+                        var recebidas = notificacoes.getNotifications((int) espera);
+                        if (recebidas != null) {
+                            for (var notificacao : recebidas) {
+                                receber(notificacao.getName(), notificacao.getParameter());
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException ex) {
+                registro.invalidar();
+                indiceOcupacao.invalidar();
+                if (!encerrado) {
+                    LOGGER.warn("Canal do registro de ativos interrompido, reconectando em {} ms", ESPERA_RECONEXAO_MS, ex);
+                    dormir();
+                }
+            }
+        }
+    }
+
+    private void receber(String canal, String conteudo) {
+        if (IndiceOcupacaoAgenda.CANAL.equals(canal)) {
+            indiceOcupacao.notificado(conteudo);
+        } else if (conteudo.startsWith(prefixoConfirmacao)) {
+            registro.confirmado(Long.parseLong(conteudo.substring(prefixoConfirmacao.length())));
+        } else if (!conteudo.startsWith(CONFIRMACAO)) {
+            registro.notificado(conteudo);
+        }
+    }
+
+    private void dormir() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ESPERA_RECONEXAO_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            encerrado = true;
+        }
+    }
+
+}
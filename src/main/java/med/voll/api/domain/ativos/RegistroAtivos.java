@@ -0,0 +1,295 @@
+package med.voll.api.domain.ativos;
+
+import jakarta.annotation.PostConstruct;
+import med.voll.api.domain.ExecucaoAposCommit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Medicos e pacientes existentes e ativos em memoria, para que o agendamento não precise de um select por id.
+ *
+ * O registro é carregado na subida (OuvinteRegistroAtivos) e alterado pelos cadastros e exclusões. A instancia que
+ * alterou aplica a alteração logo depois do commit; no PostgreSQL ela também vai por NOTIFY no canal registro_ativos,
+ * entregue às demais instancias somente no commit e na ordem dos commits.
+ *
+ * A entrega do NOTIFY é assincrona, então no PostgreSQL o registro só responde enquanto estiver confirmado: o ouvinte
+ * envia periodicamente uma confirmação pelo proprio canal e, quando ela volta, todas as alterações commitadas antes
+ * do envio já foram aplicadas. Passado api.agenda.ativos.validade sem confirmação as consultas voltam ao banco, assim
+ * uma exclusão feita em outra instancia deixa de ser ignorada em no maximo esse tempo.
+ *
+ * Um null nas consultas significa que o registro não sabe a resposta (ainda carregando, sem confirmação recente ou
+ * id ainda não notificado) e o chamador deve perguntar ao banco. Assim um médico recem cadastrado em outra
+ * instancia nunca é recusado por falta da notificação.
+ * */
+@Component
+public class RegistroAtivos {
+
+    static final String CANAL = "registro_ativos";
+
+    //Alterações por notificação nos cadastros em lote, abaixo do limite de 8000 bytes do conteudo do NOTIFY.
+    private static final int ALTERACOES_POR_NOTIFICACAO = 300;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Value("${api.agenda.ativos.validade:1s}")
+    private Duration validade;
+
+    //System.nanoTime() do envio da ultima confirmação que voltou pelo canal.
+    private volatile long confirmadoEm;
+
+    private volatile Situacoes medicos = new Situacoes();
+
+    private volatile Situacoes pacientes = new Situacoes();
+
+    private volatile boolean carregado;
+
+    private boolean carregando;
+
+    private final List<Alteracao> alteradasNaCarga = new ArrayList<>();
+
+    private boolean notificacoesPeloBanco;
+
+    @PostConstruct
+    void inicializar() {
+        var banco = jdbc.execute((ConnectionCallback<String>) conexao -> conexao.getMetaData().getDatabaseProductName());
+        notificacoesPeloBanco = "PostgreSQL".equals(banco);
+        confirmadoEm = System.nanoTime() - validade.toNanos();
+    }
+
+    public boolean notificacoesPeloBanco() {
+        return notificacoesPeloBanco;
+    }
+
+    public Boolean medicoAtivo(Long id) {
+        return confiavel() ? medicos.ativo(id) : null;
+    }
+
+    public Boolean pacienteAtivo(Long id) {
+        return confiavel() ? pacientes.ativo(id) : null;
+    }
+
+    //Intervalo entre as confirmações enviadas pelo OuvinteRegistroAtivos, bem menor que a validade.
+    Duration intervaloConfirmacao() {
+        return validade.dividedBy(4);
+    }
+
+    void confirmado(long enviadoEm) {
+        if (enviadoEm - confirmadoEm > 0) {
+            confirmadoEm = enviadoEm;
+        }
+    }
+
+    private boolean confiavel() {
+        return carregado && (!notificacoesPeloBanco || System.nanoTime() - confirmadoEm < validade.toNanos());
+    }
+
+    //Os ids que o registro não conhece são resolvidos pela consulta ao banco recebida.
+    public Set<Long> medicosAtivos(Collection<Long> ids, Function<Collection<Long>, Collection<Long>> banco) {
+        return filtrar(ids, this::medicoAtivo, true, banco);
+    }
+
+    public Set<Long> pacientesAtivos(Collection<Long> ids, Function<Collection<Long>, Collection<Long>> banco) {
+        return filtrar(ids, this::pacienteAtivo, true, banco);
+    }
+
+    public Set<Long> medicosExistentes(Collection<Long> ids, Function<Collection<Long>, Collection<Long>> banco) {
+        return filtrar(ids, this::medicoAtivo, false, banco);
+    }
+
+    public Set<Long> pacientesExistentes(Collection<Long> ids, Function<Collection<Long>, Collection<Long>> banco) {
+        return filtrar(ids, this::pacienteAtivo, false, banco);
+    }
+
+    public void medicoCadastrado(Long id) {
+        alterar(new Alteracao(true, id, true));
+    }
+
+    public void medicosCadastrados(Collection<Long> ids) {
+        alterar(ids.stream().map(id -> new Alteracao(true, id, true)).toList());
+    }
+
+    public void medicoExcluido(Long id) {
+        alterar(new Alteracao(true, id, false));
+    }
+
+    public void pacienteCadastrado(Long id) {
+        alterar(new Alteracao(false, id, true));
+    }
+
+    public void pacientesCadastrados(Collection<Long> ids) {
+        alterar(ids.stream().map(id -> new Alteracao(false, id, true)).toList());
+    }
+
+    public void pacienteExcluido(Long id) {
+        alterar(new Alteracao(false, id, false));
+    }
+
+    /*
+     * Lê as duas tabelas em conjuntos novos e troca os atuais no fim. As alterações que chegam durante a leitura
+     * são reaplicadas nos conjuntos novos: como cada uma só define a situação final do id, reaplicar uma que a
+     * leitura já enxergou não muda nada.
+     * */
+    public void carregar() {
+        synchronized (this) {
+            carregando = true;
+            alteradasNaCarga.clear();
+        }
+
+        var novosMedicos = new Situacoes();
+        var novosPacientes = new Situacoes();
+        var completo = ler("select id, ativo from medicos", novosMedicos)
+                & ler("select id, ativo from pacientes", novosPacientes);
+
+        synchronized (this) {
+            for (var alteracao : alteradasNaCarga) {
+                completo &= alteracao.aplicar(novosMedicos, novosPacientes);
+            }
+            alteradasNaCarga.clear();
+            medicos = novosMedicos;
+            pacientes = novosPacientes;
+            carregando = false;
+            carregado = completo;
+        }
+    }
+
+    //Sem o canal de notificações o registro pode ficar desatualizado; as consultas voltam ao banco até a recarga.
+    void invalidar() {
+        carregado = false;
+    }
+
+    void notificado(String conteudo) {
+        for (var parte : conteudo.split(";")) {
+            var alteracao = Alteracao.ler(parte);
+            if (alteracao != null) {
+                aplicar(alteracao);
+            }
+        }
+    }
+
+    private void alterar(Alteracao alteracao) {
+        alterar(List.of(alteracao));
+    }
+
+    private void alterar(List<Alteracao> alteracoes) {
+        ExecucaoAposCommit.executar(() -> alteracoes.forEach(this::aplicar));
+        if (!notificacoesPeloBanco) {
+            return;
+        }
+
+        //O NOTIFY faz parte da transação: só é entregue no commit e é descartado no rollback.
+        //Aqui ele chega de novo depois da aplicação local, sem efeito porque cada alteração só define a situação final.
+        for (int inicio = 0; inicio < alteracoes.size(); inicio += ALTERACOES_POR_NOTIFICACAO) {
+            var conteudo = alteracoes.subList(inicio, Math.min(alteracoes.size(), inicio + ALTERACOES_POR_NOTIFICACAO)).stream()
+                    .map(Alteracao::conteudo)
+                    .collect(Collectors.joining(";"));
+            jdbc.queryForList("select pg_notify(?, ?)", CANAL, conteudo);
+        }
+    }
+
+    private synchronized void aplicar(Alteracao alteracao) {
+        if (carregando) {
+            alteradasNaCarga.add(alteracao);
+        }
+        if (!alteracao.aplicar(medicos, pacientes)) {
+            carregado = false;
+        }
+    }
+
+    private boolean ler(String sql, Situacoes situacoes) {
+        var completo = new AtomicBoolean(true);
+        jdbc.query(sql, (RowCallbackHandler) rs -> {
+            if (!situacoes.alterar(rs.getLong(1), rs.getBoolean(2))) {
+                completo.set(false);
+            }
+        });
+        return completo.get();
+    }
+
+    private static Set<Long> filtrar(Collection<Long> ids, Function<Long, Boolean> situacao, boolean somenteAtivos,
+                                     Function<Collection<Long>, Collection<Long>> banco) {
+        var encontrados = new HashSet<Long>();
+        var desconhecidos = new ArrayList<Long>();
+        for (var id : ids) {
+            var ativo = situacao.apply(id);
+            if (ativo == null) {
+                desconhecidos.add(id);
+            } else if (ativo || !somenteAtivos) {
+                encontrados.add(id);
+            }
+        }
+        if (!desconhecidos.isEmpty()) {
+            encontrados.addAll(banco.apply(desconhecidos));
+        }
+        return encontrados;
+    }
+
+    private static final class Situacoes {
+
+        private final ConjuntoIds existentes = new ConjuntoIds();
+
+        private final ConjuntoIds ativos = new ConjuntoIds();
+
+        //null quando o id não está no registro
+        Boolean ativo(Long id) {
+            if (id == null || !existentes.contem(id)) {
+                return null;
+            }
+            return ativos.contem(id);
+        }
+
+        //A exclusão não tem volta: o NOTIFY atrasado do cadastro (ex: o da propria instancia, que chega depois da
+        //exclusão já aplicada localmente) não reativa o id.
+        boolean alterar(long id, boolean ativo) {
+            if (ativo && existentes.contem(id) && !ativos.contem(id)) {
+                return true;
+            }
+            //ativos antes de existentes: quem lê existentes e depois ativos (ativo()) nunca vê um cadastro novo como
+            //existente e inativo. As escritas do ConjuntoIds são voláteis, então a ordem vale também para as leituras.
+            var alterado = ativos.alterar(id, ativo);
+            return existentes.alterar(id, true) & alterado;
+        }
+
+    }
+
+    //Conteudo da notificação: M ou P, o id e 1 para ativo ou 0 para excluido, ex: M:42:0
+    //Nos cadastros em lote uma notificação leva varias alterações separadas por ";", ex: P:7:1;P:8:1
+    private record Alteracao(boolean medico, long id, boolean ativo) {
+
+        static Alteracao ler(String conteudo) {
+            var campos = conteudo.split(":");
+            if (campos.length != 3 || !(campos[0].equals("M") || campos[0].equals("P"))) {
+                return null;
+            }
+            try {
+                return new Alteracao("M".equals(campos[0]), Long.parseLong(campos[1]), "1".equals(campos[2]));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        String conteudo() {
+            return (medico ? "M" : "P") + ":" + id + ":" + (ativo ? "1" : "0");
+        }
+
+        boolean aplicar(Situacoes medicos, Situacoes pacientes) {
+            return (medico ? medicos : pacientes).alterar(id, ativo);
+        }
+
+    }
+
+}
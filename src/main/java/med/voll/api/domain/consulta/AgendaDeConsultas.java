@@ -1,19 +1,56 @@
 package med.voll.api.domain.consulta;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
 import jakarta.validation.ValidationException;
+import jakarta.validation.Validator;
 import med.voll.api.domain.ValidacaoExcepition;
-import med.voll.api.domain.consulta.validacoes.ValidadorAgendamentoDeConsulta;
+import med.voll.api.domain.ativos.RegistroAtivos;
+import med.voll.api.domain.consulta.validacoes.CadeiaValidadores;
+import med.voll.api.domain.consulta.validacoes.ContextoAgendamento;
+import med.voll.api.domain.consulta.validacoes.LoteAgendamento;
+import med.voll.api.domain.consulta.validacoes.ValidadorMedicoComOutraConsultaNoMesmoHorario;
+import med.voll.api.domain.consulta.validacoes.ValidadorPacienteSemOutraConsultaNoDia;
 import med.voll.api.domain.medico.Medico;
 import med.voll.api.domain.medico.MedicoRepository;
 import med.voll.api.domain.paciente.PacienteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
 
 @Service
 public class AgendaDeConsultas {
 
+    public static final String PACIENTE_NAO_EXISTE = "Id do paciente não existe!";
+    public static final String MEDICO_NAO_EXISTE = "Id do medico não existe!";
+    public static final String ESPECIALIDADE_OBRIGATORIA = "Especialidade é obrigatoria quando o médico não for escolhido!";
+    public static final String NENHUM_MEDICO_DISPONIVEL = "Nenhum médico disponível nessa data para a especialidade escolhida!";
+    private static final String CONSULTA_JA_REALIZADA = "Consulta já realizada não pode ser cancelada!";
+    private static final String CONSULTA_NAO_GRAVADA = "Não foi possivel gravar a consulta!";
+
+    //Indice unico criado na V8: dois agendamentos concorrentes do mesmo médico e horario não passam do banco.
+    public static final String RESTRICAO_MEDICO_NO_HORARIO = "uk_consultas_medico_id_data";
+
+    //Só existe no PostgreSQL (V10), no H2 o paciente no dia fica protegido apenas pelas travas.
+    public static final String RESTRICAO_PACIENTE_NO_DIA = "uk_consultas_paciente_id_dia";
+
     @Autowired
     private ConsultaRepository consultaRepository;
 
@@ -23,42 +60,382 @@ public class AgendaDeConsultas {
     @Autowired
     private PacienteRepository pacienteRepository;
 
-    //Cria uma lista com todas as classes de validalção com a implementalção da iterface
     @Autowired
-    private List<ValidadorAgendamentoDeConsulta> validadores;
+    private IndiceOcupacaoAgenda indiceOcupacao;
+
+    @Autowired
+    private DisponibilidadeMedicos disponibilidadeMedicos;
+
+    @Autowired
+    private TravasAgenda travas;
+
+    @Autowired
+    private VerificacaoAgendamento verificacaoAgendamento;
+
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
+    //Só existe com api.agenda.reservas.habilitado=true.
+    @Autowired(required = false)
+    private ReservasAgenda reservas;
 
+    @Autowired
+    private CadeiaValidadores validadores;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionTemplate transacao;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /*
+     * O tempo de cada agendamento vai para o histograma agenda.agendamentos com o resultado (sucesso, recusado
+     * ou erro) e, quando recusado, o validador que recusou.
+     * */
     public DadosDetalhamentoConsulta agendar(DadosAgendamentoConsulta dados){
+        var inicio = System.nanoTime();
+        var resultado = "erro";
+        var validador = "nenhum";
+        try {
+            var consulta = agendarSorteandoNovamente(dados);
+            resultado = "sucesso";
+            return consulta;
+        } catch (ValidacaoExcepition ex) {
+            resultado = "recusado";
+            validador = ex.getValidador() != null ? ex.getValidador() : AgendaDeConsultas.class.getSimpleName();
+            throw ex;
+        } finally {
+            timerAgendamento(resultado, validador).record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        }
+    }
 
-        //verifica se o id do paciente exite no banco de dados retornando um false ou true
-        if (!pacienteRepository.existsById(dados.idPaciente())){
-            throw new ValidacaoExcepition("Id do paciente não existe!");
+    /*
+     * Cada tentativa roda em uma transação propria: o médico sorteado pode ser gravado por outra instancia entre a
+     * conferencia e o insert, e depois do erro do banco a transação não pode continuar. O agendamento então é refeito
+     * sorteando entre os demais médicos; como cada tentativa descarta um médico, as tentativas terminam.
+     * */
+    private DadosDetalhamentoConsulta agendarSorteandoNovamente(DadosAgendamentoConsulta dados) {
+        var descartados = new HashSet<Long>();
+        while (true) {
+            try {
+                return transacao.execute(status -> agendarComTravas(dados, descartados));
+            } catch (MedicoSorteadoOcupado ex) {
+                descartados.add(ex.idMedico);
+            }
         }
+    }
+
+    /*
+     * O paciente no dia e o médico no horario ficam travados (TravasAgenda) desde antes das validações até o fim
+     * da transação, assim duas requisições concorrentes para o mesmo horario não passam juntas pela validação.
+     * */
+    private DadosDetalhamentoConsulta agendarComTravas(DadosAgendamentoConsulta dados, Set<Long> descartados){
+
+        //Regras que só dependem dos dados recebidos falham antes de qualquer ida ao banco.
+        validadores.validarLocais(dados);
+
+        var dia = dados.data().toLocalDate();
+        travas.travarPacienteNoDia(dados.idPaciente(), dia);
+        if (dados.idMedico() != null) {
+            travas.travarMedicoNoHorario(dados.idMedico(), dados.data());
+        }
+
+        //Existencia, situação e conflitos do paciente e do médico, em memoria ou em uma unica consulta.
+        var verificacao = verificacaoAgendamento.verificar(dados);
 
-        if(dados.idMedico() != null && !medicoRepository.existsById(dados.idMedico())){
-            throw new ValidacaoExcepition("Id do medico não existe!");
+        if (verificacao.getPacienteAtivo() == null){
+            throw new ValidacaoExcepition(PACIENTE_NAO_EXISTE);
+        }
+
+        if(dados.idMedico() != null && verificacao.getMedicoAtivo() == null){
+            throw new ValidacaoExcepition(MEDICO_NAO_EXISTE);
+        }
+
+        validadores.validarNoBanco(new ContextoAgendamento(dados, verificacao));
+        if (reservas != null) {
+            reservas.verificarReservas(dados);
         }
-        //Varre todas as clases de validação passando os dados no metodo validar.
-        validadores.forEach(v -> v.validar(dados));
 
         var paciente = pacienteRepository.getReferenceById(dados.idPaciente());
-        var medico = escolherMedico(dados);
+        var medico = escolherMedico(dados, descartados);
         var consulta = new Consulta(null, medico, paciente, dados.data());
-        consultaRepository.save(consulta);
+        try {
+            consultaRepository.saveAndFlush(consulta);
+        } catch (DataIntegrityViolationException ex) {
+            if (dados.idMedico() == null && violouRestricao(ex, RESTRICAO_MEDICO_NO_HORARIO)) {
+                throw new MedicoSorteadoOcupado(medico.getId());
+            }
+            var mensagem = mensagemDaRestricao(ex);
+            if (mensagem != null) {
+                throw new ValidacaoExcepition(mensagem);
+            }
+            throw ex;
+        }
+        indiceOcupacao.registrar(consulta);
 
         return new DadosDetalhamentoConsulta(consulta);
     }
 
-    private Medico escolherMedico(DadosAgendamentoConsulta dados) {
+    /*
+     * O cancelamento marca a consulta como cancelada (a linha fica para o historico e a exportação) e devolve o
+     * horario ao IndiceOcupacaoAgenda.
+     * As travas são as mesmas do agendamento e na mesma ordem, assim os indices são atualizados depois do commit
+     * e antes que um agendamento concorrente do mesmo horario consiga passar.
+     * */
+    @Transactional
+    public void cancelar(Long id) {
+        var consulta = consultaRepository.buscarParaCancelamento(id).orElseThrow(EntityNotFoundException::new);
+        if (consulta.data().isBefore(LocalDateTime.now())) {
+            throw new ValidacaoExcepition(CONSULTA_JA_REALIZADA);
+        }
+
+        travas.travarPacienteNoDia(consulta.idPaciente(), consulta.data().toLocalDate());
+        travas.travarMedicoNoHorario(consulta.idMedico(), consulta.data());
+
+        //Outra requisição pode ter cancelado a mesma consulta enquanto esta esperava as travas.
+        if (consultaRepository.cancelar(id, consulta.data(), LocalDateTime.now()) == 0) {
+            throw new EntityNotFoundException();
+        }
+        indiceOcupacao.remover(consulta);
+    }
+
+    /*
+     * Agenda um lote de consultas em uma unica transação. Cada validador faz uma unica consulta para o lote todo,
+     * os itens rejeitados voltam com a mensagem de erro e os aceitos são inseridos com batch do JDBC.
+     * O primeiroIndice é somado ao indice de cada resultado para que o chamador possa dividir a entrada em blocos.
+     *
+     * As travas cobrem os agendamentos desta instancia; um conflito com outra instancia só aparece no banco e desfaz
+     * o bloco inteiro, que então é refeito item a item para que só os itens em conflito fiquem de fora. No item sem
+     * médico o conflito do sorteado é refeito com outro sorteio, como no agendamento unitario.
+     * */
+    public List<DadosResultadoAgendamento> agendarLote(List<DadosAgendamentoConsulta> dados, int primeiroIndice) {
+        try {
+            return transacao.execute(status -> agendarBloco(dados, primeiroIndice, Set.of()));
+        } catch (DataIntegrityViolationException ex) {
+            var resultados = new ArrayList<DadosResultadoAgendamento>(dados.size());
+            for (int i = 0; i < dados.size(); i++) {
+                resultados.add(agendarItemDoLote(dados.get(i), primeiroIndice + i));
+            }
+            return resultados;
+        }
+    }
+
+    private DadosResultadoAgendamento agendarItemDoLote(DadosAgendamentoConsulta dados, int indice) {
+        var descartados = new HashSet<Long>();
+        while (true) {
+            try {
+                //singletonList aceita o item nulo, que o LoteAgendamento rejeita como agendamento inválido.
+                return transacao.execute(status -> agendarBloco(Collections.singletonList(dados), indice, descartados)).get(0);
+            } catch (MedicoSorteadoOcupado ex) {
+                descartados.add(ex.idMedico);
+            } catch (DataIntegrityViolationException ex) {
+                var mensagem = mensagemDaRestricao(ex);
+                return new DadosResultadoAgendamento(indice, null, mensagem != null ? mensagem : CONSULTA_NAO_GRAVADA);
+            }
+        }
+    }
+
+    private List<DadosResultadoAgendamento> agendarBloco(List<DadosAgendamentoConsulta> dados, int primeiroIndice,
+                                                         Set<Long> descartados) {
+        var lote = new LoteAgendamento(dados);
+        validarCampos(lote);
+
+        //Mesmas travas do agendamento unitario, obtidas antes das validações e mantidas até o fim da transação.
+        travas.travarLote(lote.pendentes().stream().map(LoteAgendamento.Item::dados).toList());
+
+        validarExistencia(lote);
+        validadores.validarLote(lote);
+        if (reservas != null) {
+            verificarReservas(lote);
+        }
+
+        //Conflitos entre os proprios itens do lote, que ainda não estão no banco.
+        var medicosNoHorario = new HashSet<MedicoNoHorario>();
+        var pacientesNoDia = new HashSet<PacienteNoDia>();
+        var consultas = new HashMap<Integer, Consulta>();
+        for (var item : lote.pendentes()) {
+            var dadosItem = item.dados();
+            var pacienteNoDia = new PacienteNoDia(dadosItem.idPaciente(), dadosItem.data().toLocalDate());
+            if (pacientesNoDia.contains(pacienteNoDia)) {
+                lote.rejeitar(item, ValidadorPacienteSemOutraConsultaNoDia.MENSAGEM);
+                continue;
+            }
+
+            var idMedico = dadosItem.idMedico();
+            if (idMedico == null) {
+                if (dadosItem.especialidade() == null) {
+                    lote.rejeitar(item, ESPECIALIDADE_OBRIGATORIA);
+                    continue;
+                }
+
+                idMedico = sortearMedico(dadosItem, id -> !descartados.contains(id)
+                        && !medicosNoHorario.contains(new MedicoNoHorario(id, dadosItem.data())));
+                if (idMedico == null) {
+                    lote.rejeitar(item, NENHUM_MEDICO_DISPONIVEL);
+                    continue;
+                }
+            } else if (medicosNoHorario.contains(new MedicoNoHorario(idMedico, dadosItem.data()))) {
+                lote.rejeitar(item, ValidadorMedicoComOutraConsultaNoMesmoHorario.MENSAGEM);
+                continue;
+            }
+
+            medicosNoHorario.add(new MedicoNoHorario(idMedico, dadosItem.data()));
+            pacientesNoDia.add(pacienteNoDia);
+            var medico = medicoRepository.getReferenceById(idMedico);
+            var paciente = pacienteRepository.getReferenceById(dadosItem.idPaciente());
+            consultas.put(item.indice(), new Consulta(null, medico, paciente, dadosItem.data()));
+        }
+
+        try {
+            consultaRepository.saveAll(consultas.values());
+            consultaRepository.flush();
+        } catch (DataIntegrityViolationException ex) {
+            //Item sozinho (lote refeito item a item) com médico sorteado: outro sorteio em vez da recusa.
+            var consulta = consultas.get(0);
+            if (dados.size() == 1 && consulta != null && dados.get(0).idMedico() == null
+                    && violouRestricao(ex, RESTRICAO_MEDICO_NO_HORARIO)) {
+                throw new MedicoSorteadoOcupado(consulta.getMedico().getId());
+            }
+            throw ex;
+        }
+        consultas.values().forEach(indiceOcupacao::registrar);
+
+        var resultados = new ArrayList<DadosResultadoAgendamento>(dados.size());
+        for (int i = 0; i < dados.size(); i++) {
+            var consulta = consultas.get(i);
+            resultados.add(consulta != null
+                    ? new DadosResultadoAgendamento(primeiroIndice + i, new DadosDetalhamentoConsulta(consulta), null)
+                    : new DadosResultadoAgendamento(primeiroIndice + i, null, lote.erro(i)));
+        }
+
+        //Libera as consultas do contexto de persistencia para que blocos seguintes não acumulem entidades.
+        entityManager.clear();
+        return resultados;
+    }
+
+    private void validarCampos(LoteAgendamento lote) {
+        for (var item : lote.pendentes()) {
+            var violacoes = validator.validate(item.dados());
+            if (!violacoes.isEmpty()) {
+                lote.rejeitar(item, violacoes.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+            }
+        }
+    }
+
+    //Horarios reservados e ainda não gravados pela ReservasAgenda contam como ocupados, como no agendamento unitario.
+    private void verificarReservas(LoteAgendamento lote) {
+        for (var item : lote.pendentes()) {
+            try {
+                reservas.verificarReservas(item.dados());
+            } catch (ValidacaoExcepition ex) {
+                lote.rejeitar(item, ex.getMessage());
+            }
+        }
+    }
+
+    private void validarExistencia(LoteAgendamento lote) {
+        var idsPacientes = lote.distintos(DadosAgendamentoConsulta::idPaciente);
+        var idsMedicos = lote.distintos(DadosAgendamentoConsulta::idMedico);
+        var pacientes = registroAtivos.pacientesExistentes(idsPacientes, pacienteRepository::buscarIdsExistentes);
+        var medicos = registroAtivos.medicosExistentes(idsMedicos, medicoRepository::buscarIdsExistentes);
+
+        for (var item : lote.pendentes()) {
+            if (!pacientes.contains(item.dados().idPaciente())) {
+                lote.rejeitar(item, PACIENTE_NAO_EXISTE);
+            } else if (item.dados().idMedico() != null && !medicos.contains(item.dados().idMedico())) {
+                lote.rejeitar(item, MEDICO_NAO_EXISTE);
+            }
+        }
+    }
+
+    //Mensagem do validador que corresponde à restrição violada, ou null quando a violação é outra.
+    static String mensagemDaRestricao(DataIntegrityViolationException ex) {
+        if (violouRestricao(ex, RESTRICAO_MEDICO_NO_HORARIO)) {
+            return ValidadorMedicoComOutraConsultaNoMesmoHorario.MENSAGEM;
+        }
+        if (violouRestricao(ex, RESTRICAO_PACIENTE_NO_DIA)) {
+            return ValidadorPacienteSemOutraConsultaNoDia.MENSAGEM;
+        }
+        return null;
+    }
+
+    static boolean violouRestricao(DataIntegrityViolationException ex, String restricao) {
+        var mensagem = ex.getMostSpecificCause().getMessage();
+        return mensagem != null && mensagem.toLowerCase().contains(restricao);
+    }
+
+    private record MedicoNoHorario(Long idMedico, LocalDateTime data) {
+    }
+
+    private record PacienteNoDia(Long idPaciente, LocalDate dia) {
+    }
+
+    //Desfaz a tentativa do agendamento para que ele seja refeito com outro médico sorteado.
+    private static class MedicoSorteadoOcupado extends RuntimeException {
+
+        private final Long idMedico;
+
+        MedicoSorteadoOcupado(Long idMedico) {
+            super(null, null, false, false);
+            this.idMedico = idMedico;
+        }
+    }
+
+    private Medico escolherMedico(DadosAgendamentoConsulta dados, Set<Long> descartados) {
         if (dados.idMedico() != null){
             return medicoRepository.getReferenceById(dados.idMedico());
         }
 
         if (dados.especialidade() == null){
-            throw new ValidacaoExcepition("Especialidade é obrigatoria quando o médico não for escolhido!");
+            throw new ValidacaoExcepition(ESPECIALIDADE_OBRIGATORIA);
         }
 
-        return medicoRepository.escolherMedicoAleatorioLivreNaData(dados.especialidade(), dados.data());
+        var idMedico = sortearMedico(dados, id -> !descartados.contains(id));
+        if (idMedico == null) {
+            throw new ValidacaoExcepition(NENHUM_MEDICO_DISPONIVEL);
+        }
+        return medicoRepository.getReferenceById(idMedico);
+    }
+
+    /*
+     * Sorteia um médico livre aceito pelo filtro, ou null quando não há nenhum.
+     * O sorteado só é aceito depois de travado e conferido no banco: outro agendamento pode ter ficado com ele
+     * entre o sorteio e a trava. Médicos com a trava ocupada são pulados em vez de esperados.
+     * */
+    private Long sortearMedico(DadosAgendamentoConsulta dados, LongPredicate permitido) {
+        var descartados = new HashSet<Long>();
+        while (true) {
+            var idMedico = disponibilidadeMedicos.escolherMedicoLivre(dados.especialidade(), dados.data(),
+                    id -> !descartados.contains(id) && permitido.test(id)
+                            && (reservas == null || !reservas.medicoReservado(id, dados.data())));
+            if (idMedico == null) {
+                return null;
+            }
+
+            if (travas.tentarTravarMedicoNoHorario(idMedico, dados.data())
+                    && !consultaRepository.existsByMedicoIdAndDataAndCanceladaFalse(idMedico, dados.data())) {
+                return idMedico;
+            }
+            descartados.add(idMedico);
+        }
+    }
 
+    private Timer timerAgendamento(String resultado, String validador) {
+        return Timer.builder("agenda.agendamentos")
+                .description("Tempo do agendamento de uma consulta")
+                .tag("resultado", resultado)
+                .tag("validador", validador)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
 }
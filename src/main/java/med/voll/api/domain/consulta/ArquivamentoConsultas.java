@@ -0,0 +1,68 @@
+package med.voll.api.domain.consulta;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/*
+ * Manutenção das partições mensais de consultas no PostgreSQL (migration V12):
+ * mantem criadas as partições dos proximos api.agenda.particoes.meses-a-frente meses e move para
+ * consultas_arquivo os meses mais antigos que api.agenda.arquivamento.meses.
+ * No H2 a tabela não é particionada e nada é feito.
+ * */
+@Component
+public class ArquivamentoConsultas {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArquivamentoConsultas.class);
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Value("${api.agenda.particoes.meses-a-frente:12}")
+    private int mesesAFrente;
+
+    @Value("${api.agenda.arquivamento.meses:24}")
+    private int mesesOnline;
+
+    private volatile boolean particionada;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        var banco = jdbc.execute((ConnectionCallback<String>) conexao -> conexao.getMetaData().getDatabaseProductName());
+        particionada = "PostgreSQL".equals(banco);
+        manter();
+    }
+
+    @Scheduled(cron = "${api.agenda.arquivamento.cron:0 30 2 * * *}")
+    public void manter() {
+        if (!particionada) {
+            return;
+        }
+
+        //Com mais de uma instancia as duas podem tentar criar a mesma partição; a que perder tenta de novo no dia seguinte.
+        try {
+            var mes = LocalDate.now().withDayOfMonth(1);
+            for (int i = 0; i <= mesesAFrente; i++) {
+                jdbc.queryForList("select criar_particao_consultas(?)", mes.plusMonths(i));
+            }
+
+            var arquivadas = jdbc.queryForObject("select arquivar_consultas(?)", Integer.class, mes.minusMonths(mesesOnline));
+            if (arquivadas != null && arquivadas > 0) {
+                LOGGER.info("{} partições de consultas anteriores a {} movidas para consultas_arquivo", arquivadas, mes.minusMonths(mesesOnline));
+            }
+        } catch (DataAccessException ex) {
+            LOGGER.warn("Falha na manutenção das partições de consultas", ex);
+        }
+    }
+
+}
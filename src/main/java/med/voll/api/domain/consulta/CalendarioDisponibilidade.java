@@ -0,0 +1,179 @@
+package med.voll.api.domain.consulta;
+
+import jakarta.persistence.EntityNotFoundException;
+import med.voll.api.domain.ExecucaoAposCommit;
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.medico.Especialidade;
+import med.voll.api.domain.medico.Medico;
+import med.voll.api.domain.medico.MedicoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Calendario de horarios livres por médico e por especialidade, sem consultas ao banco.
+ *
+ * Os horarios possiveis vêm da GradeHorarios (as mesmas regras do ValidadorHorarioFuncionamentoClinica e do
+ * ValidadorHorarioAntecedencia) e os ocupados do IndiceOcupacaoAgenda e das reservas ainda não gravadas do
+ * ReservasAgenda. No PostgreSQL o indice recebe pelo canal consultas_agenda as consultas de todas as instancias e da
+ * agenda-reativa; sem PostgreSQL ele só conhece as consultas gravadas por esta instancia.
+ * Aqui ficam só os médicos ativos de cada especialidade, mantidos no cadastro e na exclusão de médicos.
+ * Dias fora do horizonte do indice não têm horarios livres.
+ *
+ * A resposta é uma fotografia e pode estar atrasada: a entrega pelo canal é assincrona, as reservas pendentes de
+ * outras instancias só contam depois de gravadas e os médicos cadastrados em outra instancia só aparecem depois de
+ * uma nova subida. O agendamento continua conferindo no banco, então um horario mostrado como livre pode ser recusado.
+ * */
+@Component
+public class CalendarioDisponibilidade {
+
+    private static final String PERIODO_INVALIDO = "Periodo inválido: o fim deve ser igual ou posterior ao inicio!";
+
+    @Autowired
+    private MedicoRepository medicoRepository;
+
+    @Autowired
+    private IndiceOcupacaoAgenda indiceOcupacao;
+
+    @Autowired(required = false)
+    private ReservasAgenda reservas;
+
+    @Value("${api.agenda.disponibilidade.max-dias:31}")
+    private int maxDias;
+
+    private final Map<Long, Especialidade> ativos = new ConcurrentHashMap<>();
+
+    private final Map<Especialidade, Set<Long>> ativosPorEspecialidade = new EnumMap<>(Especialidade.class);
+
+    private volatile boolean carregado;
+
+    public CalendarioDisponibilidade() {
+        for (var especialidade : Especialidade.values()) {
+            ativosPorEspecialidade.put(especialidade, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void carregar() {
+        medicoRepository.listarEspecialidadesDosAtivos().forEach(m -> adicionar(m.id(), m.especialidade()));
+        carregado = true;
+    }
+
+    public boolean disponivel() {
+        return carregado && indiceOcupacao.aquecido();
+    }
+
+    public List<LocalDateTime> horariosLivresDoMedico(Long idMedico, LocalDate inicio, LocalDate fim) {
+        if (!ativos.containsKey(idMedico)) {
+            throw new EntityNotFoundException();
+        }
+
+        var livres = new ArrayList<LocalDateTime>();
+        var limite = limiteAntecedencia();
+        for (var dia = primeiroDia(inicio, fim); !dia.isAfter(ultimoDia(inicio, fim)); dia = dia.plusDays(1)) {
+            if (!GradeHorarios.clinicaAbertaNoDia(dia)) {
+                continue;
+            }
+
+            var ocupados = indiceOcupacao.horariosOcupadosDoMedico(idMedico, dia);
+            if (reservas != null) {
+                ocupados |= reservas.horariosReservadosDoMedico(idMedico, dia);
+            }
+            var livresNoDia = ~ocupados & IndiceOcupacaoAgenda.TODOS_OS_HORARIOS;
+            while (livresNoDia != 0) {
+                var data = GradeHorarios.inicioDoHorario(dia, Integer.numberOfTrailingZeros(livresNoDia));
+                if (!data.isBefore(limite)) {
+                    livres.add(data);
+                }
+                livresNoDia &= livresNoDia - 1;
+            }
+        }
+        return livres;
+    }
+
+    public List<DadosHorarioLivre> horariosLivresDaEspecialidade(Especialidade especialidade, LocalDate inicio, LocalDate fim) {
+        var medicos = ativosPorEspecialidade.get(especialidade);
+        var livres = new ArrayList<DadosHorarioLivre>();
+        var limite = limiteAntecedencia();
+        var ocupados = new int[GradeHorarios.HORARIOS_POR_DIA];
+        for (var dia = primeiroDia(inicio, fim); !dia.isAfter(ultimoDia(inicio, fim)); dia = dia.plusDays(1)) {
+            if (!GradeHorarios.clinicaAbertaNoDia(dia)) {
+                continue;
+            }
+
+            //O total é lido antes da soma: um médico cadastrado no meio da conta não gera numero negativo.
+            var total = medicos.size();
+            Arrays.fill(ocupados, 0);
+            indiceOcupacao.somarMedicosOcupados(medicos, dia, ocupados);
+            if (reservas != null) {
+                reservas.somarMedicosReservados(medicos, dia, ocupados);
+            }
+            for (int horario = 0; horario < GradeHorarios.HORARIOS_POR_DIA; horario++) {
+                var data = GradeHorarios.inicioDoHorario(dia, horario);
+                var medicosLivres = total - ocupados[horario];
+                if (medicosLivres > 0 && !data.isBefore(limite)) {
+                    livres.add(new DadosHorarioLivre(data, medicosLivres));
+                }
+            }
+        }
+        return livres;
+    }
+
+    public void medicoCadastrado(Medico medico) {
+        var idMedico = medico.getId();
+        var especialidade = medico.getEspecialidade();
+        ExecucaoAposCommit.executar(() -> adicionar(idMedico, especialidade));
+    }
+
+    public void medicosCadastrados(Map<Long, Especialidade> medicos) {
+        ExecucaoAposCommit.executar(() -> medicos.forEach(this::adicionar));
+    }
+
+    public void medicoExcluido(Medico medico) {
+        var idMedico = medico.getId();
+        ExecucaoAposCommit.executar(() -> {
+            var especialidade = ativos.remove(idMedico);
+            if (especialidade != null) {
+                ativosPorEspecialidade.get(especialidade).remove(idMedico);
+            }
+        });
+    }
+
+    private void adicionar(Long idMedico, Especialidade especialidade) {
+        ativos.put(idMedico, especialidade);
+        ativosPorEspecialidade.get(especialidade).add(idMedico);
+    }
+
+    private static LocalDate primeiroDia(LocalDate inicio, LocalDate fim) {
+        if (fim.isBefore(inicio)) {
+            throw new ValidacaoExcepition(PERIODO_INVALIDO);
+        }
+        var hoje = LocalDate.now();
+        return inicio.isBefore(hoje) ? hoje : inicio;
+    }
+
+    //Periodos longos são cortados em maxDias a partir do inicio.
+    private LocalDate ultimoDia(LocalDate inicio, LocalDate fim) {
+        var maximo = primeiroDia(inicio, fim).plusDays(maxDias - 1);
+        return fim.isAfter(maximo) ? maximo : fim;
+    }
+
+    private static LocalDateTime limiteAntecedencia() {
+        return LocalDateTime.now().plusMinutes(GradeHorarios.ANTECEDENCIA_MINIMA_MINUTOS);
+    }
+
+}
@@ -7,6 +7,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import med.voll.api.domain.medico.Medico;
 import med.voll.api.domain.paciente.Paciente;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
@@ -18,8 +19,11 @@ import java.time.LocalDateTime;
 @EqualsAndHashCode(of = "id")
 public class Consulta {
 
+    //Sequence com allocationSize 50 (otimizador pooled): o Hibernate reserva 50 ids por ida ao banco
+    //e consegue agrupar os inserts em batch, o que não acontece com IDENTITY.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "consultas_seq")
+    @SequenceGenerator(name = "consultas_seq", sequenceName = "consultas_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -32,5 +36,26 @@ public class Consulta {
 
     private LocalDateTime data;
 
+    @UpdateTimestamp
+    @Column(name = "atualizado_em")
+    private LocalDateTime atualizadoEm;
+
+    //Preenchido só nas consultas gravadas a partir de uma reserva (ReservasAgenda).
+    private String reserva;
+
+    //Consulta cancelada continua na tabela, fora das restrições unicas e das verificações de conflito (V15).
+    private boolean cancelada;
+
+    public Consulta(Long id, Medico medico, Paciente paciente, LocalDateTime data) {
+        this.id = id;
+        this.medico = medico;
+        this.paciente = paciente;
+        this.data = data;
+    }
+
+    public Consulta(Medico medico, Paciente paciente, LocalDateTime data, String reserva) {
+        this(null, medico, paciente, data);
+        this.reserva = reserva;
+    }
 
 }
@@ -1,11 +1,222 @@
 package med.voll.api.domain.consulta;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+//As consultas canceladas (V15) ficam fora das verificações de conflito e das agendas, só o historico e a exportação as veem.
 public interface ConsultaRepository extends JpaRepository<Consulta, Long> {
-    boolean existsByMedicoIdAndData(Long idMedico, LocalDateTime data);
+    boolean existsByMedicoIdAndDataAndCanceladaFalse(Long idMedico, LocalDateTime data);
 
-    boolean existsByPacienteIdAndDataBetween(Long idPaciente, LocalDateTime primeiroHorario, LocalDateTime ultimoHorario);
+    boolean existsByPacienteIdAndDataBetweenAndCanceladaFalse(Long idPaciente, LocalDateTime primeiroHorario, LocalDateTime ultimoHorario);
+
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosOcupacaoConsulta(c.medico.id, c.paciente.id, c.data)
+            from Consulta c
+            where
+            c.data >= :inicio
+            and
+            c.data < :fim
+            and
+            c.cancelada = false
+            """)
+    Stream<DadosOcupacaoConsulta> buscarOcupacaoEntre(LocalDateTime inicio, LocalDateTime fim);
+
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosOcupacaoConsulta(c.medico.id, c.paciente.id, c.data)
+            from Consulta c
+            where
+            c.medico.id in :idsMedicos
+            and
+            c.data in :datas
+            and
+            c.cancelada = false
+            """)
+    List<DadosOcupacaoConsulta> buscarOcupacaoDosMedicos(Collection<Long> idsMedicos, Collection<LocalDateTime> datas);
+
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosOcupacaoConsulta(c.medico.id, c.paciente.id, c.data)
+            from Consulta c
+            where
+            c.paciente.id in :idsPacientes
+            and
+            c.data between :inicio and :fim
+            and
+            c.cancelada = false
+            """)
+    List<DadosOcupacaoConsulta> buscarOcupacaoDosPacientes(Collection<Long> idsPacientes, LocalDateTime inicio, LocalDateTime fim);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosExportacaoConsulta(c.id, c.medico.id, c.paciente.id, c.data, c.cancelada, c.atualizadoEm)
+            from Consulta c
+            where
+            c.atualizadoEm >= :desde
+            order by c.id
+            """)
+    Stream<DadosExportacaoConsulta> exportarAtualizadasDesde(LocalDateTime desde);
+
+    /*
+     * Verificação completa de um agendamento em uma ida ao banco: existencia e situação do paciente e do médico
+     * e os conflitos de horario. Os conflitos só são consultados quando o indice em memoria não garante que
+     * o horario está livre (verificarMedico / verificarPaciente).
+     * */
+    @Query(nativeQuery = true, value = """
+            select
+            (select p.ativo from pacientes p where p.id = :idPaciente) as "pacienteAtivo",
+            (select m.ativo from medicos m where m.id = :idMedico) as "medicoAtivo",
+            (:verificarMedico and exists(
+                select 1 from consultas c where c.medico_id = :idMedico and c.data = :data and not c.cancelada
+            )) as "medicoOcupadoNoHorario",
+            (:verificarPaciente and exists(
+                select 1 from consultas c where c.paciente_id = :idPaciente and c.data >= :inicioDia and c.data < :fimDia
+                and not c.cancelada
+            )) as "pacienteComConsultaNoDia"
+            """)
+    DadosVerificacaoAgendamento verificarAgendamento(Long idPaciente, Long idMedico, LocalDateTime data,
+                                                     LocalDateTime inicioDia, LocalDateTime fimDia,
+                                                     boolean verificarMedico, boolean verificarPaciente);
+
+    //Listagens por cursor (data, id): medico e paciente entram no mesmo select, sem carregar as associações LAZY.
+    //O limite em data repetido fora do "or" deixa o PostgreSQL descartar as partições fora do periodo.
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosListagemConsulta(c.id, c.data, m.id, m.nome, m.especialidade, p.id, p.nome, c.cancelada)
+            from Consulta c
+            join c.medico m
+            join c.paciente p
+            where
+            m.id = :idMedico
+            and
+            c.data >= :inicio
+            and
+            c.data < :fim
+            and
+            c.cancelada = false
+            order by c.data, c.id
+            """)
+    List<DadosListagemConsulta> listarAgendaDoMedico(Long idMedico, LocalDateTime inicio, LocalDateTime fim, Pageable limite);
+
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosListagemConsulta(c.id, c.data, m.id, m.nome, m.especialidade, p.id, p.nome, c.cancelada)
+            from Consulta c
+            join c.medico m
+            join c.paciente p
+            where
+            m.id = :idMedico
+            and
+            c.data >= :data
+            and
+            c.data < :fim
+            and
+            (c.data > :data or (c.data = :data and c.id > :id))
+            and
+            c.cancelada = false
+            order by c.data, c.id
+            """)
+    List<DadosListagemConsulta> listarAgendaDoMedicoApos(Long idMedico, LocalDateTime fim, LocalDateTime data, Long id, Pageable limite);
+
+    //Historico do paciente da consulta mais recente para a mais antiga, inclusive as canceladas.
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosListagemConsulta(c.id, c.data, m.id, m.nome, m.especialidade, p.id, p.nome, c.cancelada)
+            from Consulta c
+            join c.medico m
+            join c.paciente p
+            where
+            p.id = :idPaciente
+            order by c.data desc, c.id desc
+            """)
+    List<DadosListagemConsulta> listarHistoricoDoPaciente(Long idPaciente, Pageable limite);
+
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosListagemConsulta(c.id, c.data, m.id, m.nome, m.especialidade, p.id, p.nome, c.cancelada)
+            from Consulta c
+            join c.medico m
+            join c.paciente p
+            where
+            p.id = :idPaciente
+            and
+            c.data <= :data
+            and
+            (c.data < :data or (c.data = :data and c.id < :id))
+            order by c.data desc, c.id desc
+            """)
+    List<DadosListagemConsulta> listarHistoricoDoPacienteApos(Long idPaciente, LocalDateTime data, Long id, Pageable limite);
+
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosListagemConsulta(c.id, c.data, m.id, m.nome, m.especialidade, p.id, p.nome, c.cancelada)
+            from Consulta c
+            join c.medico m
+            join c.paciente p
+            where
+            c.data >= :inicio
+            and
+            c.data < :fim
+            and
+            c.cancelada = false
+            order by c.data, c.id
+            """)
+    List<DadosListagemConsulta> listarDoDia(LocalDateTime inicio, LocalDateTime fim, Pageable limite);
+
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosListagemConsulta(c.id, c.data, m.id, m.nome, m.especialidade, p.id, p.nome, c.cancelada)
+            from Consulta c
+            join c.medico m
+            join c.paciente p
+            where
+            c.data >= :data
+            and
+            c.data < :fim
+            and
+            (c.data > :data or (c.data = :data and c.id > :id))
+            and
+            c.cancelada = false
+            order by c.data, c.id
+            """)
+    List<DadosListagemConsulta> listarDoDiaApos(LocalDateTime fim, LocalDateTime data, Long id, Pageable limite);
+
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosCancelamentoConsulta(c.id, c.medico.id, c.paciente.id, c.data)
+            from Consulta c
+            where
+            c.id = :id
+            and
+            c.cancelada = false
+            """)
+    Optional<DadosCancelamentoConsulta> buscarParaCancelamento(Long id);
+
+    //A data junto do id limita o update à partição do mes da consulta. O update em massa não passa pelo
+    //@UpdateTimestamp, então atualizado_em vem do chamador.
+    @Modifying
+    @Query("""
+            update Consulta c
+            set c.cancelada = true, c.atualizadoEm = :agora
+            where
+            c.id = :id
+            and
+            c.data = :data
+            and
+            c.cancelada = false
+            """)
+    int cancelar(Long id, LocalDateTime data, LocalDateTime agora);
+
+    //Reservas do journal que já chegaram ao banco (ReservasAgenda).
+    @Query("""
+            select new med.voll.api.domain.consulta.DadosReservaGravada(c.reserva, c.id)
+            from Consulta c
+            where c.reserva in :reservas
+            """)
+    List<DadosReservaGravada> buscarReservasGravadas(Collection<String> reservas);
 }
@@ -0,0 +1,7 @@
+package med.voll.api.domain.consulta;
+
+import java.time.LocalDateTime;
+
+//O necessario para cancelar uma consulta e devolver o horario aos indices em memoria, sem carregar as entidades.
+public record DadosCancelamentoConsulta(Long id, Long idMedico, Long idPaciente, LocalDateTime data) {
+}
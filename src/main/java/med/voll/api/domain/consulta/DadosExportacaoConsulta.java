@@ -0,0 +1,7 @@
+package med.voll.api.domain.consulta;
+
+import java.time.LocalDateTime;
+
+public record DadosExportacaoConsulta(Long id, Long idMedico, Long idPaciente, LocalDateTime data, boolean cancelada,
+                                      LocalDateTime atualizadoEm) {
+}
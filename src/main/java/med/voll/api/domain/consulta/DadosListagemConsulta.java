@@ -0,0 +1,9 @@
+package med.voll.api.domain.consulta;
+
+import med.voll.api.domain.medico.Especialidade;
+
+import java.time.LocalDateTime;
+
+public record DadosListagemConsulta(Long id, LocalDateTime data, Long idMedico, String nomeMedico, Especialidade especialidade,
+                                    Long idPaciente, String nomePaciente, boolean cancelada) {
+}
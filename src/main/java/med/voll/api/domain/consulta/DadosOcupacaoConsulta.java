@@ -0,0 +1,6 @@
+package med.voll.api.domain.consulta;
+
+import java.time.LocalDateTime;
+
+public record DadosOcupacaoConsulta(Long idMedico, Long idPaciente, LocalDateTime data) {
+}
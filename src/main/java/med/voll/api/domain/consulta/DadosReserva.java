@@ -0,0 +1,16 @@
+package med.voll.api.domain.consulta;
+
+import java.time.LocalDateTime;
+
+public record DadosReserva(String id, SituacaoReserva situacao, Long idMedico, Long idPaciente, LocalDateTime data,
+                           Long idConsulta, String motivo) {
+
+    public DadosReserva gravada(Long idConsulta) {
+        return new DadosReserva(id, SituacaoReserva.GRAVADA, idMedico, idPaciente, data, idConsulta, null);
+    }
+
+    public DadosReserva recusada(String motivo) {
+        return new DadosReserva(id, SituacaoReserva.RECUSADA, idMedico, idPaciente, data, null, motivo);
+    }
+
+}
@@ -0,0 +1,4 @@
+package med.voll.api.domain.consulta;
+
+public record DadosReservaGravada(String reserva, Long idConsulta) {
+}
@@ -0,0 +1,4 @@
+package med.voll.api.domain.consulta;
+
+public record DadosResultadoAgendamento(int indice, DadosDetalhamentoConsulta consulta, String erro) {
+}
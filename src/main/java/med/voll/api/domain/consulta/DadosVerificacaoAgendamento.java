@@ -0,0 +1,19 @@
+package med.voll.api.domain.consulta;
+
+/*
+ * Tudo o que o agendamento precisa saber do banco, obtido em uma unica consulta
+ * (ConsultaRepository.verificarAgendamento).
+ * */
+public interface DadosVerificacaoAgendamento {
+
+    //null quando o paciente não existe
+    Boolean getPacienteAtivo();
+
+    //null quando o médico não existe ou não foi informado
+    Boolean getMedicoAtivo();
+
+    Boolean getMedicoOcupadoNoHorario();
+
+    Boolean getPacienteComConsultaNoDia();
+
+}
@@ -0,0 +1,197 @@
+package med.voll.api.domain.consulta;
+
+import med.voll.api.domain.ExecucaoAposCommit;
+import med.voll.api.domain.ativos.RegistroAtivos;
+import med.voll.api.domain.medico.Especialidade;
+import med.voll.api.domain.medico.Medico;
+import med.voll.api.domain.medico.MedicoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongPredicate;
+
+/*
+ * Sorteio de um médico livre da especialidade no horario, no lugar do "order by rand() limit 1" de
+ * MedicoRepository.escolherMedicoAleatorioLivreNaData.
+ *
+ * Em memoria fica só um vetor ordenado com os ids dos médicos ativos de cada especialidade (8 bytes por médico),
+ * mantido no cadastro e na exclusão de médicos. A ocupação vem do IndiceOcupacaoAgenda: quando ele cobre o horario
+ * o sorteio não vai ao banco. Fora do horizonte do indice cada sorteado é conferido no banco pela chave
+ * uk_consultas_medico_id_data e, depois de MAX_CONFERENCIAS ocupados, os livres são buscados de uma vez.
+ * */
+@Component
+public class DisponibilidadeMedicos {
+
+    //Conferencias de um sorteado por vez antes de buscar todos os livres do horario no banco.
+    private static final int MAX_CONFERENCIAS = 8;
+
+    @Autowired
+    private MedicoRepository medicoRepository;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private IndiceOcupacaoAgenda indiceOcupacao;
+
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
+    //Carregado na primeira escolha da especialidade.
+    private final Map<Especialidade, long[]> ativosPorEspecialidade = new ConcurrentHashMap<>();
+
+    //Retorna o id de um médico livre sorteado ou null quando não existe médico livre no horario.
+    public Long escolherMedicoLivre(Especialidade especialidade, LocalDateTime data) {
+        return escolherMedicoLivre(especialidade, data, idMedico -> true);
+    }
+
+    //Igual ao anterior, mas só sorteia médicos aceitos pelo filtro (usado no agendamento em lote).
+    public Long escolherMedicoLivre(Especialidade especialidade, LocalDateTime data, LongPredicate permitido) {
+        LongPredicate candidato = idMedico -> permitido.test(idMedico)
+                && !Boolean.FALSE.equals(registroAtivos.medicoAtivo(idMedico));
+        var sorteio = new Sorteio(ativos(especialidade));
+
+        if (indiceOcupacao.cobre(data)) {
+            var idMedico = sorteio.proximo(id -> candidato.test(id) && !indiceOcupacao.medicoPossivelmenteOcupado(id, data));
+            //Todos com o bit aceso: o bit pode ser de uma consulta já cancelada, então a resposta final é do banco.
+            return idMedico != null ? idMedico : sortearEntreLivresNoBanco(especialidade, data, candidato);
+        }
+
+        for (int conferencias = 0; conferencias < MAX_CONFERENCIAS; conferencias++) {
+            var idMedico = sorteio.proximo(candidato);
+            if (idMedico == null) {
+                return null;
+            }
+            if (!consultaRepository.existsByMedicoIdAndDataAndCanceladaFalse(idMedico, data)) {
+                return idMedico;
+            }
+        }
+        return sortearEntreLivresNoBanco(especialidade, data, candidato);
+    }
+
+    public void medicoCadastrado(Medico medico) {
+        var idMedico = medico.getId();
+        var especialidade = medico.getEspecialidade();
+
+        ExecucaoAposCommit.executar(() -> ativosPorEspecialidade.computeIfPresent(especialidade, (e, ids) -> incluir(ids, idMedico)));
+    }
+
+    //Cadastro em lote (importação): as especialidades importadas são descartadas e carregadas de novo na proxima escolha.
+    public void medicosCadastrados(Collection<Especialidade> especialidades) {
+        var afetadas = EnumSet.noneOf(Especialidade.class);
+        afetadas.addAll(especialidades);
+        ExecucaoAposCommit.executar(() -> afetadas.forEach(ativosPorEspecialidade::remove));
+    }
+
+    public void medicoExcluido(Medico medico) {
+        var idMedico = medico.getId();
+        var especialidade = medico.getEspecialidade();
+
+        ExecucaoAposCommit.executar(() -> ativosPorEspecialidade.computeIfPresent(especialidade, (e, ids) -> excluir(ids, idMedico)));
+    }
+
+    //Os médicos cadastrados por outras instancias entram na recarga; os excluidos já são pulados pelo RegistroAtivos.
+    @Scheduled(cron = "0 0 * * * *")
+    public void descartarEspecialidades() {
+        ativosPorEspecialidade.clear();
+    }
+
+    /*
+     * A carga roda dentro do computeIfAbsent: um cadastro commitado durante a leitura espera a carga terminar no
+     * computeIfPresent e é aplicado em seguida, sem se perder.
+     * */
+    private long[] ativos(Especialidade especialidade) {
+        return ativosPorEspecialidade.computeIfAbsent(especialidade, e -> medicoRepository.buscarIdsAtivosDaEspecialidade(e)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray());
+    }
+
+    private Long sortearEntreLivresNoBanco(Especialidade especialidade, LocalDateTime data, LongPredicate candidato) {
+        List<Long> livres = medicoRepository.buscarIdsLivresNaData(especialidade, data);
+        return new Sorteio(livres.stream().mapToLong(Long::longValue).toArray()).proximo(candidato);
+    }
+
+    private static long[] incluir(long[] ids, long idMedico) {
+        var posicao = Arrays.binarySearch(ids, idMedico);
+        if (posicao >= 0) {
+            return ids;
+        }
+
+        posicao = -posicao - 1;
+        var novos = new long[ids.length + 1];
+        System.arraycopy(ids, 0, novos, 0, posicao);
+        novos[posicao] = idMedico;
+        System.arraycopy(ids, posicao, novos, posicao + 1, ids.length - posicao);
+        return novos;
+    }
+
+    private static long[] excluir(long[] ids, long idMedico) {
+        var posicao = Arrays.binarySearch(ids, idMedico);
+        if (posicao < 0) {
+            return ids;
+        }
+
+        var novos = new long[ids.length - 1];
+        System.arraycopy(ids, 0, novos, 0, posicao);
+        System.arraycopy(ids, posicao + 1, novos, posicao, novos.length - posicao);
+        return novos;
+    }
+
+    /*
+     * Fisher-Yates parcial sobre o vetor compartilhado, sem copiar: só as posições trocadas pelos recusados ficam em
+     * um mapa local da escolha. Cada candidato restante continua com a mesma chance e nenhum é testado duas vezes.
+     * */
+    private static class Sorteio {
+
+        private final long[] ids;
+        private int candidatos;
+        private Map<Integer, Long> trocados;
+
+        Sorteio(long[] ids) {
+            this.ids = ids;
+            this.candidatos = ids.length;
+        }
+
+        Long proximo(LongPredicate aceito) {
+            var aleatorio = ThreadLocalRandom.current();
+            while (candidatos > 0) {
+                var posicao = aleatorio.nextInt(candidatos);
+                var id = idNaPosicao(posicao);
+                //O sorteado sai da faixa de candidatos, aceito ou não: uma nova chamada não o repete.
+                var ultimo = --candidatos;
+                if (posicao != ultimo) {
+                    if (trocados == null) {
+                        trocados = new HashMap<>();
+                    }
+                    trocados.put(posicao, idNaPosicao(ultimo));
+                }
+                if (aceito.test(id)) {
+                    return id;
+                }
+            }
+            return null;
+        }
+
+        private long idNaPosicao(int posicao) {
+            if (trocados != null) {
+                var id = trocados.get(posicao);
+                if (id != null) {
+                    return id;
+                }
+            }
+            return ids[posicao];
+        }
+    }
+
+}
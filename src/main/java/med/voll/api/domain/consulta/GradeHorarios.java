@@ -0,0 +1,43 @@
+package med.voll.api.domain.consulta;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/*
+ * Grade de horarios da clinica: de segunda a sabado, das 07:00 as 18:00, com consultas de uma hora.
+ * Cada dia possui 12 horarios (07h, 08h, ..., 18h) que são numerados de 0 a 11.
+ * */
+public final class GradeHorarios {
+
+    public static final int HORA_ABERTURA = 7;
+    public static final int HORA_ENCERRAMENTO = 18;
+    public static final int HORARIOS_POR_DIA = HORA_ENCERRAMENTO - HORA_ABERTURA + 1;
+    public static final int ANTECEDENCIA_MINIMA_MINUTOS = 30;
+
+    private GradeHorarios() {
+    }
+
+    public static boolean clinicaAbertaNoDia(LocalDate dia) {
+        return !dia.getDayOfWeek().equals(DayOfWeek.SUNDAY);
+    }
+
+    //Retorna o numero do horario dentro do dia ou -1 quando a data estiver fora do horario de funcionamento.
+    public static int horarioDoDia(LocalDateTime data) {
+        if (!clinicaAbertaNoDia(data.toLocalDate())) {
+            return -1;
+        }
+
+        var hora = data.getHour();
+        if (hora < HORA_ABERTURA || hora > HORA_ENCERRAMENTO) {
+            return -1;
+        }
+
+        return hora - HORA_ABERTURA;
+    }
+
+    public static LocalDateTime inicioDoHorario(LocalDate dia, int horario) {
+        return dia.atTime(HORA_ABERTURA + horario, 0);
+    }
+
+}
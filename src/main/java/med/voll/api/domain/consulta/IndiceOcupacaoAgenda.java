@@ -0,0 +1,413 @@
+package med.voll.api.domain.consulta;
+
+import jakarta.annotation.PostConstruct;
+import med.voll.api.domain.ExecucaoAposCommit;
+import med.voll.api.domain.ativos.RegistroAtivos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Indice em memoria da ocupação da agenda de cada médico e de cada paciente.
+ *
+ * Para cada id é mantido um bitset com um bit por horario da GradeHorarios dentro de uma janela
+ * de horizonte-dias a partir de hoje. Os dias são guardados em um buffer circular (epochDay % horizonte)
+ * e o vetor rotulos guarda qual dia cada posição representa no momento.
+ *
+ * O indice responde "livre" ou "possivelmente ocupado": um bit aceso é confirmado no banco de dados e um bit apagado
+ * dispensa a consulta. Sem PostgreSQL o bit apagado só vale para as consultas gravadas por esta instancia. No
+ * PostgreSQL o indice é mantido pelo canal consultas_agenda (trigger da V14, refeito na V15_1), que entrega as
+ * consultas gravadas, canceladas ou removidas por qualquer instancia, pela agenda-reativa ou direto no banco; a carga
+ * e a recarga depois de uma queda do canal ficam com o OuvinteRegistroAtivos. Mesmo assim a entrega é assincrona,
+ * então o bit apagado não decide sozinho: o insert continua sujeito às restrições unicas uk_consultas_medico_id_data
+ * (V8) e, no PostgreSQL, uk_consultas_paciente_id_dia (V10), que desde a V15_1 ignoram as consultas canceladas.
+ * */
+@Component
+public class IndiceOcupacaoAgenda {
+
+    public static final int TODOS_OS_HORARIOS = (1 << GradeHorarios.HORARIOS_POR_DIA) - 1;
+
+    public static final String CANAL = "consultas_agenda";
+
+    @Autowired
+    private ConsultaRepository repository;
+
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
+    @Value("${api.agenda.ocupacao.horizonte-dias:90}")
+    private int horizonteDias;
+
+    private final Map<Long, AtomicLongArray> medicos = new ConcurrentHashMap<>();
+
+    private final Map<Long, AtomicLongArray> pacientes = new ConcurrentHashMap<>();
+
+    //Consultas a mais de um id no mesmo horario da grade (ex: 10:00 e 10:30). O cancelamento de uma delas só apaga
+    //o bit quando não sobra nenhuma. Alteradas sempre com o monitor do bitset do id.
+    private final Map<HorarioDoId, Integer> repetidosMedicos = new ConcurrentHashMap<>();
+
+    private final Map<HorarioDoId, Integer> repetidosPacientes = new ConcurrentHashMap<>();
+
+    //Leitura e marcação usam o read lock, somente o avanço do horizonte precisa do write lock.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] rotulos;
+
+    private volatile boolean aquecido;
+
+    @PostConstruct
+    void inicializar() {
+        rotulos = new long[horizonteDias];
+        var hoje = LocalDate.now().toEpochDay();
+        for (long dia = hoje; dia < hoje + horizonteDias; dia++) {
+            rotulos[posicaoDoDia(dia)] = dia;
+        }
+    }
+
+    //Carrega as consultas do horizonte assim que a aplicação sobe. No PostgreSQL a carga é feita pelo
+    //OuvinteRegistroAtivos depois do LISTEN, para não perder as consultas gravadas durante a leitura.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void aquecer() {
+        if (!registroAtivos.notificacoesPeloBanco()) {
+            carregar();
+        }
+    }
+
+    /*
+     * Descarta o que estiver no indice e lê de novo as consultas do horizonte. Uma consulta commitada entre o LISTEN e
+     * a leitura chega também pelo canal e fica marcada duas vezes: o cancelamento dela deixa o horario como
+     * possivelmente ocupado, que só custa uma ida ao banco.
+     * */
+    @Transactional(readOnly = true)
+    public void carregar() {
+        aquecido = false;
+        lock.writeLock().lock();
+        try {
+            medicos.clear();
+            pacientes.clear();
+            repetidosMedicos.clear();
+            repetidosPacientes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        //Durante a leitura o indice não está aquecido e responde possivelmente ocupado.
+        var inicio = LocalDate.now().atStartOfDay();
+        try (var ocupacoes = repository.buscarOcupacaoEntre(inicio, inicio.plusDays(horizonteDias))) {
+            ocupacoes.forEach(o -> marcar(o.idMedico(), o.idPaciente(), o.data()));
+        }
+        aquecido = true;
+    }
+
+    //Sem o canal consultas_agenda o indice pode ficar desatualizado: tudo fica possivelmente ocupado até a recarga.
+    public void invalidar() {
+        aquecido = false;
+    }
+
+    //Conteudo enviado pelo trigger da V14: I ou D, o médico, o paciente e a data, ex: I:42:7:2022-10-10T10:00:00
+    public void notificado(String conteudo) {
+        var campos = conteudo.split(":", 4);
+        if (campos.length != 4 || !(campos[0].equals("I") || campos[0].equals("D"))) {
+            return;
+        }
+
+        try {
+            var idMedico = Long.valueOf(campos[1]);
+            var idPaciente = Long.valueOf(campos[2]);
+            var data = LocalDateTime.parse(campos[3]);
+            if (campos[0].equals("I")) {
+                marcar(idMedico, idPaciente, data);
+            } else {
+                desmarcar(idMedico, idPaciente, data);
+            }
+        } catch (NumberFormatException | DateTimeParseException ex) {
+            //conteudo que não veio do trigger, ignorado
+        }
+    }
+
+    //Registra uma consulta recem salva. Dentro de uma transação o indice só é atualizado depois do commit.
+    //No PostgreSQL a consulta chega pelo canal consultas_agenda, como as das demais instancias.
+    public void registrar(Consulta consulta) {
+        if (registroAtivos.notificacoesPeloBanco()) {
+            return;
+        }
+
+        var idMedico = consulta.getMedico().getId();
+        var idPaciente = consulta.getPaciente().getId();
+        var data = consulta.getData();
+
+        ExecucaoAposCommit.executar(() -> marcar(idMedico, idPaciente, data));
+    }
+
+    //Libera o horario de uma consulta cancelada, também só depois do commit.
+    public void remover(DadosCancelamentoConsulta consulta) {
+        if (registroAtivos.notificacoesPeloBanco()) {
+            return;
+        }
+
+        var idMedico = consulta.idMedico();
+        var idPaciente = consulta.idPaciente();
+        var data = consulta.data();
+
+        ExecucaoAposCommit.executar(() -> desmarcar(idMedico, idPaciente, data));
+    }
+
+    public boolean medicoPossivelmenteOcupado(Long idMedico, LocalDateTime data) {
+        if (idMedico == null) {
+            return false;
+        }
+
+        lock.readLock().lock();
+        try {
+            var bit = bitDoHorario(data);
+            if (!aquecido || bit < 0) {
+                return true;
+            }
+
+            var bitset = medicos.get(idMedico);
+            return bitset != null && ligado(bitset, bit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean pacientePossivelmenteComConsultaNoDia(Long idPaciente, LocalDate dia) {
+        lock.readLock().lock();
+        try {
+            var primeiroBit = bitDoHorario(GradeHorarios.inicioDoHorario(dia, 0));
+            if (!aquecido || primeiroBit < 0) {
+                return true;
+            }
+
+            var bitset = pacientes.get(idPaciente);
+            if (bitset == null) {
+                return false;
+            }
+
+            for (int bit = primeiroBit; bit < primeiroBit + GradeHorarios.HORARIOS_POR_DIA; bit++) {
+                if (ligado(bitset, bit)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean aquecido() {
+        return aquecido;
+    }
+
+    //Quando o indice cobre o horario (aquecido, na grade e no horizonte) o bit apagado vale como livre sem ir ao banco.
+    public boolean cobre(LocalDateTime data) {
+        lock.readLock().lock();
+        try {
+            return aquecido && bitDoHorario(data) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Mascara dos horarios ocupados do médico no dia, um bit por horario da GradeHorarios (bit 0 = 07h).
+    //Fora do horizonte todos os horarios são tratados como ocupados.
+    public int horariosOcupadosDoMedico(Long idMedico, LocalDate dia) {
+        lock.readLock().lock();
+        try {
+            var primeiroBit = bitDoHorario(GradeHorarios.inicioDoHorario(dia, 0));
+            if (primeiroBit < 0) {
+                return TODOS_OS_HORARIOS;
+            }
+            return mascaraDoDia(medicos.get(idMedico), primeiroBit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Soma em ocupadosPorHorario quantos dos médicos informados estão ocupados em cada horario do dia.
+    public void somarMedicosOcupados(Iterable<Long> idsMedicos, LocalDate dia, int[] ocupadosPorHorario) {
+        lock.readLock().lock();
+        try {
+            var primeiroBit = bitDoHorario(GradeHorarios.inicioDoHorario(dia, 0));
+            for (var idMedico : idsMedicos) {
+                var mascara = primeiroBit < 0 ? TODOS_OS_HORARIOS : mascaraDoDia(medicos.get(idMedico), primeiroBit);
+                while (mascara != 0) {
+                    ocupadosPorHorario[Integer.numberOfTrailingZeros(mascara)]++;
+                    mascara &= mascara - 1;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Todo dia a meia noite as posições dos dias que passaram são limpas e reaproveitadas para os novos dias do horizonte.
+    @Scheduled(cron = "0 0 0 * * *")
+    @Transactional(readOnly = true)
+    public void avancarHorizonte() {
+        var hoje = LocalDate.now().toEpochDay();
+
+        lock.writeLock().lock();
+        try {
+            for (int posicao = 0; posicao < horizonteDias; posicao++) {
+                if (rotulos[posicao] >= hoje) {
+                    continue;
+                }
+
+                var novoDia = rotulos[posicao] + horizonteDias;
+                limparDia(medicos, repetidosMedicos, posicao);
+                limparDia(pacientes, repetidosPacientes, posicao);
+                rotulos[posicao] = novoDia;
+
+                var inicio = LocalDate.ofEpochDay(novoDia).atStartOfDay();
+                try (var ocupacoes = repository.buscarOcupacaoEntre(inicio, inicio.plusDays(1))) {
+                    ocupacoes.forEach(o -> marcarSemLock(o.idMedico(), o.idPaciente(), o.data()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void marcar(Long idMedico, Long idPaciente, LocalDateTime data) {
+        lock.readLock().lock();
+        try {
+            marcarSemLock(idMedico, idPaciente, data);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void marcarSemLock(Long idMedico, Long idPaciente, LocalDateTime data) {
+        var bit = bitDoHorario(data);
+        if (bit < 0) {
+            return;
+        }
+
+        ocupar(medicos.computeIfAbsent(idMedico, id -> novoBitset()), repetidosMedicos, idMedico, bit);
+        ocupar(pacientes.computeIfAbsent(idPaciente, id -> novoBitset()), repetidosPacientes, idPaciente, bit);
+    }
+
+    private void desmarcar(Long idMedico, Long idPaciente, LocalDateTime data) {
+        lock.readLock().lock();
+        try {
+            var bit = bitDoHorario(data);
+            if (bit < 0) {
+                return;
+            }
+
+            var bitsetMedico = medicos.get(idMedico);
+            if (bitsetMedico != null) {
+                liberar(bitsetMedico, repetidosMedicos, idMedico, bit);
+            }
+            var bitsetPaciente = pacientes.get(idPaciente);
+            if (bitsetPaciente != null) {
+                liberar(bitsetPaciente, repetidosPacientes, idPaciente, bit);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Retorna a posição do bit do horario ou -1 quando o horario está fora da grade ou fora do horizonte.
+    private int bitDoHorario(LocalDateTime data) {
+        var horario = GradeHorarios.horarioDoDia(data);
+        if (horario < 0) {
+            return -1;
+        }
+
+        var dia = data.toLocalDate().toEpochDay();
+        var posicao = posicaoDoDia(dia);
+        if (rotulos[posicao] != dia) {
+            return -1;
+        }
+
+        return posicao * GradeHorarios.HORARIOS_POR_DIA + horario;
+    }
+
+    private int posicaoDoDia(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) horizonteDias);
+    }
+
+    private void limparDia(Map<Long, AtomicLongArray> bitsets, Map<HorarioDoId, Integer> repetidos, int posicao) {
+        var primeiroBit = posicao * GradeHorarios.HORARIOS_POR_DIA;
+        bitsets.values().forEach(bitset -> {
+            for (int bit = primeiroBit; bit < primeiroBit + GradeHorarios.HORARIOS_POR_DIA; bit++) {
+                desligar(bitset, bit);
+            }
+        });
+        repetidos.keySet().removeIf(horario -> horario.bit() >= primeiroBit
+                && horario.bit() < primeiroBit + GradeHorarios.HORARIOS_POR_DIA);
+    }
+
+    private static void ocupar(AtomicLongArray bitset, Map<HorarioDoId, Integer> repetidos, Long id, int bit) {
+        synchronized (bitset) {
+            if (ligado(bitset, bit)) {
+                repetidos.merge(new HorarioDoId(id, bit), 1, Integer::sum);
+            } else {
+                ligar(bitset, bit);
+            }
+        }
+    }
+
+    private static void liberar(AtomicLongArray bitset, Map<HorarioDoId, Integer> repetidos, Long id, int bit) {
+        synchronized (bitset) {
+            var horario = new HorarioDoId(id, bit);
+            var quantidade = repetidos.get(horario);
+            if (quantidade == null) {
+                desligar(bitset, bit);
+            } else if (quantidade == 1) {
+                repetidos.remove(horario);
+            } else {
+                repetidos.put(horario, quantidade - 1);
+            }
+        }
+    }
+
+    private static int mascaraDoDia(AtomicLongArray bitset, int primeiroBit) {
+        if (bitset == null) {
+            return 0;
+        }
+
+        var mascara = 0;
+        for (int horario = 0; horario < GradeHorarios.HORARIOS_POR_DIA; horario++) {
+            if (ligado(bitset, primeiroBit + horario)) {
+                mascara |= 1 << horario;
+            }
+        }
+        return mascara;
+    }
+
+    private AtomicLongArray novoBitset() {
+        return new AtomicLongArray((horizonteDias * GradeHorarios.HORARIOS_POR_DIA + 63) / 64);
+    }
+
+    private record HorarioDoId(Long id, int bit) {
+    }
+
+    private static boolean ligado(AtomicLongArray bitset, int bit) {
+        return (bitset.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    private static void ligar(AtomicLongArray bitset, int bit) {
+        bitset.getAndAccumulate(bit >>> 6, 1L << bit, (atual, mascara) -> atual | mascara);
+    }
+
+    private static void desligar(AtomicLongArray bitset, int bit) {
+        bitset.getAndAccumulate(bit >>> 6, 1L << bit, (atual, mascara) -> atual & ~mascara);
+    }
+
+}
@@ -0,0 +1,257 @@
+package med.voll.api.domain.consulta;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/*
+ * Journal das reservas da agenda: um arquivo local só de acrescimos, uma linha por evento.
+ *
+ *   R|id|idMedico|idPaciente|data   reserva aceita e ainda não gravada em consultas
+ *   G|id|idConsulta                 reserva gravada
+ *   F|id|motivo                     reserva recusada na gravação
+ *
+ * Cada linha termina com o CRC32 do conteudo. Uma linha cortada por uma queda no meio da escrita é descartada
+ * na abertura e o arquivo é truncado nela, para que a proxima linha não fique colada no lixo.
+ *
+ * A escrita só retorna depois do force do canal. Escritas concorrentes dividem o mesmo force: quem escreve enquanto
+ * outra thread força o disco é coberto pelo force seguinte, em vez de esperar um force só seu.
+ *
+ * Sem reservas pendentes o arquivo é zerado; acima de api.agenda.reservas.journal-max-bytes ele é reescrito só com as
+ * pendentes em um arquivo temporario, que substitui o original com um move atomico.
+ * */
+@Component
+@ConditionalOnProperty(name = "api.agenda.reservas.habilitado", havingValue = "true")
+public class JournalReservas {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JournalReservas.class);
+
+    @Value("${api.agenda.reservas.journal:data/reservas.journal}")
+    private Path arquivo;
+
+    @Value("${api.agenda.reservas.journal-max-bytes:67108864}")
+    private long maxBytes;
+
+    private final Object escrita = new Object();
+
+    private final Object sincronizacao = new Object();
+
+    private FileChannel canal;
+
+    //Total de bytes escritos desde a abertura, sem voltar a zero nas compactações.
+    private volatile long escritos;
+
+    private long sincronizados;
+
+    private List<DadosReserva> recuperadas;
+
+    @PostConstruct
+    void abrir() throws IOException {
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recuperadas = ler();
+    }
+
+    @PreDestroy
+    void fechar() throws IOException {
+        synchronized (escrita) {
+            canal.close();
+        }
+    }
+
+    //Ultima situação de cada reserva encontrada no arquivo na abertura.
+    public List<DadosReserva> recuperar() {
+        return recuperadas;
+    }
+
+    public void registrarReserva(DadosReserva reserva) {
+        escrever(List.of(linha(reserva)));
+    }
+
+    public void registrarConcluidas(Collection<DadosReserva> reservas) {
+        if (!reservas.isEmpty()) {
+            escrever(reservas.stream().map(JournalReservas::linha).toList());
+        }
+    }
+
+    /*
+     * O supplier é lido com a escrita travada: uma reserva é marcada como pendente antes de ir para o journal,
+     * então nenhuma reserva aceita fica de fora do arquivo novo.
+     * */
+    public void compactar(Supplier<Collection<DadosReserva>> pendentes) {
+        synchronized (escrita) {
+            try {
+                var tamanho = canal.size();
+                if (tamanho == 0) {
+                    return;
+                }
+
+                var atuais = pendentes.get();
+                if (atuais.isEmpty()) {
+                    synchronized (sincronizacao) {
+                        canal.truncate(0);
+                        canal.force(false);
+                        sincronizados = escritos;
+                    }
+                } else if (tamanho > maxBytes) {
+                    reescrever(atuais);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private void escrever(List<String> linhas) {
+        var conteudo = new StringBuilder();
+        linhas.forEach(conteudo::append);
+        var buffer = ByteBuffer.wrap(conteudo.toString().getBytes(StandardCharsets.UTF_8));
+
+        long ate;
+        try {
+            synchronized (escrita) {
+                while (buffer.hasRemaining()) {
+                    canal.write(buffer, canal.size());
+                }
+                escritos += buffer.limit();
+                ate = escritos;
+            }
+            sincronizar(ate);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void sincronizar(long ate) throws IOException {
+        synchronized (sincronizacao) {
+            if (sincronizados >= ate) {
+                return;
+            }
+            var escritosAntes = escritos;
+            canal.force(false);
+            sincronizados = escritosAntes;
+        }
+    }
+
+    private void reescrever(Collection<DadosReserva> pendentes) throws IOException {
+        var temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (var novo = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            for (var reserva : pendentes) {
+                var buffer = ByteBuffer.wrap(linha(reserva).getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    novo.write(buffer);
+                }
+            }
+            novo.force(true);
+        }
+
+        synchronized (sincronizacao) {
+            canal.close();
+            Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            canal = FileChannel.open(arquivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            sincronizados = escritos;
+        }
+        LOGGER.info("Journal de reservas compactado com {} reservas pendentes", pendentes.size());
+    }
+
+    private List<DadosReserva> ler() throws IOException {
+        var bytes = Files.readAllBytes(arquivo);
+        var reservas = new LinkedHashMap<String, DadosReserva>();
+        var validos = 0;
+        for (int inicio = 0, fim; inicio < bytes.length; inicio = fim + 1) {
+            fim = indiceQuebra(bytes, inicio);
+            if (fim < 0 || !interpretar(new String(bytes, inicio, fim - inicio, StandardCharsets.UTF_8), reservas)) {
+                LOGGER.warn("Journal de reservas truncado na posição {} de {} bytes", inicio, bytes.length);
+                break;
+            }
+            validos = fim + 1;
+        }
+
+        if (validos < bytes.length) {
+            canal.truncate(validos);
+            canal.force(false);
+        }
+        return new ArrayList<>(reservas.values());
+    }
+
+    private static int indiceQuebra(byte[] bytes, int inicio) {
+        for (int i = inicio; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //Retorna false para uma linha corrompida. G e F de uma reserva que não está no arquivo são ignorados:
+    //a reserva saiu em uma compactação anterior.
+    private static boolean interpretar(String linha, Map<String, DadosReserva> reservas) {
+        var corte = linha.lastIndexOf('|');
+        if (corte < 0) {
+            return false;
+        }
+
+        var conteudo = linha.substring(0, corte);
+        try {
+            if (Long.parseLong(linha.substring(corte + 1), 16) != crc(conteudo)) {
+                return false;
+            }
+
+            var campos = conteudo.split("\\|", -1);
+            switch (campos[0]) {
+                case "R" -> reservas.put(campos[1], new DadosReserva(campos[1], SituacaoReserva.PENDENTE,
+                        Long.valueOf(campos[2]), Long.valueOf(campos[3]), LocalDateTime.parse(campos[4]), null, null));
+                case "G" -> reservas.computeIfPresent(campos[1], (id, reserva) -> reserva.gravada(Long.valueOf(campos[2])));
+                case "F" -> reservas.computeIfPresent(campos[1], (id, reserva) -> reserva.recusada(campos[2]));
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    private static String linha(DadosReserva reserva) {
+        var conteudo = switch (reserva.situacao()) {
+            case PENDENTE -> String.join("|", "R", reserva.id(), reserva.idMedico().toString(),
+                    reserva.idPaciente().toString(), reserva.data().toString());
+            case GRAVADA -> String.join("|", "G", reserva.id(), reserva.idConsulta().toString());
+            case RECUSADA -> String.join("|", "F", reserva.id(), reserva.motivo().replaceAll("[|\\r\\n]", " "));
+        };
+        return conteudo + "|" + Long.toHexString(crc(conteudo)) + "\n";
+    }
+
+    private static long crc(String conteudo) {
+        var crc = new CRC32();
+        crc.update(conteudo.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+}
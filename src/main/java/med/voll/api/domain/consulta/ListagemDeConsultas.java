@@ -0,0 +1,98 @@
+package med.voll.api.domain.consulta;
+
+import med.voll.api.domain.CursorPaginacao;
+import med.voll.api.domain.DadosPaginaCursor;
+import med.voll.api.domain.ValidacaoExcepition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/*
+ * Listagens de consultas usadas pelo ConsultaController: agenda do médico, historico do paciente e visão do dia.
+ *
+ * Cada pagina é um unico select com os dados do médico e do paciente (DadosListagemConsulta), paginado por
+ * cursor sobre (data, id) e apoiado nos indices (medico_id, data), (paciente_id, data) e (data, id).
+ * O cursor reaproveita o CursorPaginacao com a data em ISO no lugar do nome.
+ * */
+@Service
+public class ListagemDeConsultas {
+
+    public static final int TAMANHO_MAXIMO_PAGINA = 100;
+
+    @Autowired
+    private ConsultaRepository repository;
+
+    @Transactional(readOnly = true)
+    public DadosPaginaCursor<DadosListagemConsulta> agendaDoMedico(Long idMedico, LocalDate inicio, LocalDate fim, String cursor, int tamanho) {
+        if (fim.isBefore(inicio)) {
+            throw new ValidacaoExcepition("Periodo inválido: o fim deve ser igual ou posterior ao inicio!");
+        }
+
+        tamanho = limitar(tamanho);
+        var limite = PageRequest.of(0, tamanho + 1);
+        var fimExclusivo = fim.plusDays(1).atStartOfDay();
+
+        List<DadosListagemConsulta> registros;
+        if (cursor == null) {
+            registros = repository.listarAgendaDoMedico(idMedico, inicio.atStartOfDay(), fimExclusivo, limite);
+        } else {
+            var posicao = CursorPaginacao.decodificar(cursor);
+            registros = repository.listarAgendaDoMedicoApos(idMedico, fimExclusivo, data(posicao), posicao.id(), limite);
+        }
+        return pagina(registros, tamanho);
+    }
+
+    @Transactional(readOnly = true)
+    public DadosPaginaCursor<DadosListagemConsulta> historicoDoPaciente(Long idPaciente, String cursor, int tamanho) {
+        tamanho = limitar(tamanho);
+        var limite = PageRequest.of(0, tamanho + 1);
+
+        List<DadosListagemConsulta> registros;
+        if (cursor == null) {
+            registros = repository.listarHistoricoDoPaciente(idPaciente, limite);
+        } else {
+            var posicao = CursorPaginacao.decodificar(cursor);
+            registros = repository.listarHistoricoDoPacienteApos(idPaciente, data(posicao), posicao.id(), limite);
+        }
+        return pagina(registros, tamanho);
+    }
+
+    @Transactional(readOnly = true)
+    public DadosPaginaCursor<DadosListagemConsulta> consultasDoDia(LocalDate dia, String cursor, int tamanho) {
+        tamanho = limitar(tamanho);
+        var limite = PageRequest.of(0, tamanho + 1);
+        var fim = dia.plusDays(1).atStartOfDay();
+
+        List<DadosListagemConsulta> registros;
+        if (cursor == null) {
+            registros = repository.listarDoDia(dia.atStartOfDay(), fim, limite);
+        } else {
+            var posicao = CursorPaginacao.decodificar(cursor);
+            registros = repository.listarDoDiaApos(fim, data(posicao), posicao.id(), limite);
+        }
+        return pagina(registros, tamanho);
+    }
+
+    private static int limitar(int tamanho) {
+        return Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA));
+    }
+
+    private static DadosPaginaCursor<DadosListagemConsulta> pagina(List<DadosListagemConsulta> registros, int tamanho) {
+        return DadosPaginaCursor.de(registros, tamanho, r -> new CursorPaginacao(r.data().toString(), r.id()));
+    }
+
+    private static LocalDateTime data(CursorPaginacao posicao) {
+        try {
+            return LocalDateTime.parse(posicao.nome());
+        } catch (DateTimeParseException ex) {
+            throw new ValidacaoExcepition("Cursor de paginação inválido!");
+        }
+    }
+
+}
@@ -0,0 +1,415 @@
+package med.voll.api.domain.consulta;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.validacoes.CadeiaValidadores;
+import med.voll.api.domain.consulta.validacoes.ContextoAgendamento;
+import med.voll.api.domain.consulta.validacoes.ValidadorMedicoComOutraConsultaNoMesmoHorario;
+import med.voll.api.domain.consulta.validacoes.ValidadorPacienteSemOutraConsultaNoDia;
+import med.voll.api.domain.medico.MedicoRepository;
+import med.voll.api.domain.paciente.PacienteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+
+/*
+ * Agendamento com gravação posterior (api.agenda.reservas.habilitado=true).
+ *
+ * A reserva passa pelas mesmas travas e validações do agendamento sincrono, mas sem transação de escrita: o horario do
+ * médico e o dia do paciente ficam reservados em memoria, a reserva vai para o JournalReservas e a resposta sai assim que o
+ * journal está no disco. Uma tarefa agendada grava as reservas pendentes em consultas em grupos de
+ * api.agenda.reservas.grupo, uma transação e um batch do JDBC por grupo.
+ *
+ * O banco continua sendo a palavra final: um agendamento sincrono concorrente pode ficar com o horario e a reserva
+ * termina RECUSADA, com o motivo consultado em GET /reservas/{id}. Na subida as reservas pendentes do journal voltam
+ * para a fila, exceto as que já estão em consultas (coluna reserva, V13), que caíram entre o commit e o journal.
+ * */
+@Service
+@ConditionalOnProperty(name = "api.agenda.reservas.habilitado", havingValue = "true")
+public class ReservasAgenda {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReservasAgenda.class);
+
+    private static final String RESTRICAO_RESERVA = "uk_consultas_reserva";
+
+    private static final String CONSULTA_NAO_GRAVADA = "Não foi possivel gravar a consulta da reserva!";
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private MedicoRepository medicoRepository;
+
+    @Autowired
+    private PacienteRepository pacienteRepository;
+
+    @Autowired
+    private IndiceOcupacaoAgenda indiceOcupacao;
+
+    @Autowired
+    private DisponibilidadeMedicos disponibilidadeMedicos;
+
+    @Autowired
+    private CadeiaValidadores validadores;
+
+    @Autowired
+    private VerificacaoAgendamento verificacaoAgendamento;
+
+    @Autowired
+    private JournalReservas journal;
+
+    @Autowired
+    private TravasAgenda travas;
+
+    @Autowired
+    private TransactionTemplate transacao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    //Transação só de leitura da reserva, necessaria para que as travas da agenda sejam liberadas no fim.
+    private TransactionTemplate leitura;
+
+    @Value("${api.agenda.reservas.grupo:200}")
+    private int tamanhoGrupo;
+
+    private final Map<String, DadosReserva> pendentes = new ConcurrentHashMap<>();
+
+    //Reservas já gravadas ou recusadas, mantidas só para a consulta da situação.
+    private final Cache<String, DadosReserva> concluidas = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofHours(1))
+            .maximumSize(100_000)
+            .build();
+
+    private final Set<MedicoNoHorario> medicosReservados = ConcurrentHashMap.newKeySet();
+
+    private final Set<PacienteNoDia> pacientesReservados = ConcurrentHashMap.newKeySet();
+
+    private final BlockingQueue<DadosReserva> fila = new LinkedBlockingQueue<>();
+
+    private volatile boolean recuperado;
+
+    @PostConstruct
+    void inicializar() {
+        leitura = new TransactionTemplate(transactionManager);
+        leitura.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recuperar() {
+        var recuperadas = new ArrayList<DadosReserva>();
+        for (var reserva : journal.recuperar()) {
+            if (reserva.situacao() != SituacaoReserva.PENDENTE) {
+                concluidas.put(reserva.id(), reserva);
+                continue;
+            }
+            pendentes.put(reserva.id(), reserva);
+            medicosReservados.add(new MedicoNoHorario(reserva.idMedico(), reserva.data()));
+            pacientesReservados.add(new PacienteNoDia(reserva.idPaciente(), reserva.data().toLocalDate()));
+            recuperadas.add(reserva);
+        }
+
+        for (int i = 0; i < recuperadas.size(); i += tamanhoGrupo) {
+            fila.addAll(separarJaGravadas(recuperadas.subList(i, Math.min(i + tamanhoGrupo, recuperadas.size()))));
+        }
+        if (!recuperadas.isEmpty()) {
+            LOGGER.info("{} reservas pendentes recuperadas do journal", recuperadas.size());
+        }
+        recuperado = true;
+    }
+
+    public boolean disponivel() {
+        return recuperado;
+    }
+
+    public DadosReserva reservar(DadosAgendamentoConsulta dados) {
+        validadores.validarLocais(dados);
+        return leitura.execute(status -> reservarComTravas(dados));
+    }
+
+    /*
+     * Mesmas travas e na mesma ordem do agendamento sincrono, mantidas até a reserva estar em memoria: um agendamento
+     * concorrente do mesmo horario ou já encontra a reserva em verificarReservas ou já gravou a consulta e atualizou
+     * os indices quando a reserva é verificada.
+     * */
+    private DadosReserva reservarComTravas(DadosAgendamentoConsulta dados) {
+        travas.travarPacienteNoDia(dados.idPaciente(), dados.data().toLocalDate());
+        if (dados.idMedico() != null) {
+            travas.travarMedicoNoHorario(dados.idMedico(), dados.data());
+        }
+
+        var verificacao = verificacaoAgendamento.verificar(dados);
+
+        if (verificacao.getPacienteAtivo() == null) {
+            throw new ValidacaoExcepition(AgendaDeConsultas.PACIENTE_NAO_EXISTE);
+        }
+
+        if (dados.idMedico() != null && verificacao.getMedicoAtivo() == null) {
+            throw new ValidacaoExcepition(AgendaDeConsultas.MEDICO_NAO_EXISTE);
+        }
+
+        validadores.validarNoBanco(new ContextoAgendamento(dados, verificacao));
+
+        var pacienteNoDia = new PacienteNoDia(dados.idPaciente(), dados.data().toLocalDate());
+        if (!pacientesReservados.add(pacienteNoDia)) {
+            throw new ValidacaoExcepition(ValidadorPacienteSemOutraConsultaNoDia.MENSAGEM);
+        }
+
+        MedicoNoHorario medicoNoHorario = null;
+        try {
+            medicoNoHorario = reservarMedico(dados);
+            var reserva = new DadosReserva(UUID.randomUUID().toString(), SituacaoReserva.PENDENTE,
+                    medicoNoHorario.idMedico(), dados.idPaciente(), dados.data(), null, null);
+
+            //Pendente antes de ir para o journal, assim uma compactação concorrente não deixa a reserva de fora.
+            pendentes.put(reserva.id(), reserva);
+            try {
+                journal.registrarReserva(reserva);
+            } catch (RuntimeException ex) {
+                pendentes.remove(reserva.id());
+                throw ex;
+            }
+            fila.add(reserva);
+            return reserva;
+        } catch (RuntimeException ex) {
+            pacientesReservados.remove(pacienteNoDia);
+            if (medicoNoHorario != null) {
+                medicosReservados.remove(medicoNoHorario);
+            }
+            throw ex;
+        }
+    }
+
+    public DadosReserva buscar(String id) {
+        var reserva = pendentes.get(id);
+        if (reserva == null) {
+            reserva = concluidas.getIfPresent(id);
+        }
+        if (reserva == null) {
+            throw new EntityNotFoundException();
+        }
+        return reserva;
+    }
+
+    //Usado pelo agendamento sincrono: horarios reservados e ainda não gravados contam como ocupados.
+    public void verificarReservas(DadosAgendamentoConsulta dados) {
+        if (pacientesReservados.contains(new PacienteNoDia(dados.idPaciente(), dados.data().toLocalDate()))) {
+            throw new ValidacaoExcepition(ValidadorPacienteSemOutraConsultaNoDia.MENSAGEM);
+        }
+        if (dados.idMedico() != null && medicoReservado(dados.idMedico(), dados.data())) {
+            throw new ValidacaoExcepition(ValidadorMedicoComOutraConsultaNoMesmoHorario.MENSAGEM);
+        }
+    }
+
+    public boolean medicoReservado(Long idMedico, LocalDateTime data) {
+        return medicosReservados.contains(new MedicoNoHorario(idMedico, data));
+    }
+
+    //Usado pelo CalendarioDisponibilidade: mascara dos horarios da GradeHorarios com reserva do médico ainda não gravada.
+    public int horariosReservadosDoMedico(Long idMedico, LocalDate dia) {
+        var mascara = 0;
+        for (var reservado : medicosReservados) {
+            var horario = GradeHorarios.horarioDoDia(reservado.data());
+            if (horario >= 0 && reservado.idMedico().equals(idMedico) && reservado.data().toLocalDate().equals(dia)) {
+                mascara |= 1 << horario;
+            }
+        }
+        return mascara;
+    }
+
+    //Também do CalendarioDisponibilidade: soma em ocupadosPorHorario os médicos informados com reserva ainda não
+    //gravada no dia. A reserva que já está no indice (gravada e ainda não liberada) não é contada de novo.
+    public void somarMedicosReservados(Set<Long> idsMedicos, LocalDate dia, int[] ocupadosPorHorario) {
+        for (var reservado : medicosReservados) {
+            if (!reservado.data().toLocalDate().equals(dia) || !idsMedicos.contains(reservado.idMedico())) {
+                continue;
+            }
+            var horario = GradeHorarios.horarioDoDia(reservado.data());
+            if (horario >= 0 && !indiceOcupacao.medicoPossivelmenteOcupado(reservado.idMedico(), reservado.data())) {
+                ocupadosPorHorario[horario]++;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${api.agenda.reservas.intervalo-ms:50}")
+    public synchronized void gravarPendentes() {
+        if (!recuperado) {
+            return;
+        }
+
+        var grupo = new ArrayList<DadosReserva>(tamanhoGrupo);
+        while (fila.drainTo(grupo, tamanhoGrupo) > 0) {
+            if (!gravar(grupo)) {
+                break;
+            }
+            grupo.clear();
+        }
+        journal.compactar(pendentes::values);
+    }
+
+    //Na parada as reservas que couberem são gravadas, as demais ficam no journal para a proxima subida.
+    @PreDestroy
+    void encerrar() {
+        gravarPendentes();
+    }
+
+    private MedicoNoHorario reservarMedico(DadosAgendamentoConsulta dados) {
+        if (dados.idMedico() != null) {
+            var medicoNoHorario = new MedicoNoHorario(dados.idMedico(), dados.data());
+            if (!medicosReservados.add(medicoNoHorario)) {
+                throw new ValidacaoExcepition(ValidadorMedicoComOutraConsultaNoMesmoHorario.MENSAGEM);
+            }
+            return medicoNoHorario;
+        }
+
+        if (dados.especialidade() == null) {
+            throw new ValidacaoExcepition(AgendaDeConsultas.ESPECIALIDADE_OBRIGATORIA);
+        }
+
+        //Mesmo sorteio do agendamento sincrono, pulando os médicos que já têm reserva no horario.
+        var descartados = new HashSet<Long>();
+        while (true) {
+            var idMedico = disponibilidadeMedicos.escolherMedicoLivre(dados.especialidade(), dados.data(),
+                    id -> !descartados.contains(id) && !medicoReservado(id, dados.data()));
+            if (idMedico == null) {
+                throw new ValidacaoExcepition(AgendaDeConsultas.NENHUM_MEDICO_DISPONIVEL);
+            }
+
+            //Como no sincrono, o sorteado só é aceito depois de travado e conferido no banco.
+            if (travas.tentarTravarMedicoNoHorario(idMedico, dados.data())
+                    && !consultaRepository.existsByMedicoIdAndDataAndCanceladaFalse(idMedico, dados.data())) {
+                var medicoNoHorario = new MedicoNoHorario(idMedico, dados.data());
+                if (medicosReservados.add(medicoNoHorario)) {
+                    return medicoNoHorario;
+                }
+            }
+            descartados.add(idMedico);
+        }
+    }
+
+    //Retorna false quando o banco está indisponivel: o grupo volta para a fila e é tentado na proxima execução.
+    private boolean gravar(List<DadosReserva> grupo) {
+        try {
+            try {
+                concluir(grupo, transacao.execute(status -> inserir(grupo)));
+            } catch (DataIntegrityViolationException ex) {
+                //Um conflito desfaz o grupo inteiro, então as reservas são gravadas uma a uma para isolar as recusadas.
+                grupo.forEach(this::gravarSozinha);
+            }
+            return true;
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Falha gravando {} reservas, nova tentativa na proxima execução", grupo.size(), ex);
+            grupo.stream().filter(r -> pendentes.containsKey(r.id())).forEach(fila::add);
+            return false;
+        }
+    }
+
+    private void gravarSozinha(DadosReserva reserva) {
+        try {
+            concluir(List.of(reserva), transacao.execute(status -> inserir(List.of(reserva))));
+        } catch (DataIntegrityViolationException ex) {
+            if (AgendaDeConsultas.violouRestricao(ex, RESTRICAO_RESERVA)) {
+                //Gravada em uma execução anterior que falhou antes de chegar ao journal.
+                separarJaGravadas(List.of(reserva));
+            } else {
+                recusar(reserva, motivo(ex));
+            }
+        }
+    }
+
+    private List<Consulta> inserir(List<DadosReserva> grupo) {
+        var consultas = new ArrayList<Consulta>(grupo.size());
+        for (var reserva : grupo) {
+            consultas.add(new Consulta(medicoRepository.getReferenceById(reserva.idMedico()),
+                    pacienteRepository.getReferenceById(reserva.idPaciente()), reserva.data(), reserva.id()));
+        }
+        consultaRepository.saveAll(consultas);
+        consultaRepository.flush();
+
+        consultas.forEach(indiceOcupacao::registrar);
+        return consultas;
+    }
+
+    //Os indices já foram atualizados no commit, então as reservas em memoria podem ser liberadas.
+    private void concluir(List<DadosReserva> grupo, List<Consulta> consultas) {
+        var gravadas = new ArrayList<DadosReserva>(grupo.size());
+        for (int i = 0; i < grupo.size(); i++) {
+            gravadas.add(grupo.get(i).gravada(consultas.get(i).getId()));
+        }
+        journal.registrarConcluidas(gravadas);
+        gravadas.forEach(this::liberar);
+    }
+
+    private void recusar(DadosReserva reserva, String motivo) {
+        var recusada = reserva.recusada(motivo);
+        journal.registrarConcluidas(List.of(recusada));
+        liberar(recusada);
+    }
+
+    //Conclui as reservas que já estão em consultas e retorna as que ainda precisam ser gravadas.
+    private List<DadosReserva> separarJaGravadas(List<DadosReserva> reservas) {
+        var idsConsultas = consultaRepository.buscarReservasGravadas(reservas.stream().map(DadosReserva::id).toList())
+                .stream()
+                .collect(Collectors.toMap(DadosReservaGravada::reserva, DadosReservaGravada::idConsulta));
+
+        var gravadas = new ArrayList<DadosReserva>();
+        var restantes = new ArrayList<DadosReserva>();
+        for (var reserva : reservas) {
+            var idConsulta = idsConsultas.get(reserva.id());
+            if (idConsulta == null) {
+                restantes.add(reserva);
+            } else {
+                gravadas.add(reserva.gravada(idConsulta));
+            }
+        }
+        journal.registrarConcluidas(gravadas);
+        gravadas.forEach(this::liberar);
+        return restantes;
+    }
+
+    private void liberar(DadosReserva concluida) {
+        concluidas.put(concluida.id(), concluida);
+        pendentes.remove(concluida.id());
+        medicosReservados.remove(new MedicoNoHorario(concluida.idMedico(), concluida.data()));
+        pacientesReservados.remove(new PacienteNoDia(concluida.idPaciente(), concluida.data().toLocalDate()));
+    }
+
+    private static String motivo(DataIntegrityViolationException ex) {
+        var mensagem = AgendaDeConsultas.mensagemDaRestricao(ex);
+        return mensagem != null ? mensagem : CONSULTA_NAO_GRAVADA;
+    }
+
+    private record MedicoNoHorario(Long idMedico, LocalDateTime data) {
+    }
+
+    private record PacienteNoDia(Long idPaciente, LocalDate dia) {
+    }
+
+}
@@ -0,0 +1,13 @@
+package med.voll.api.domain.consulta;
+
+public enum SituacaoReserva {
+
+    //Aceita e registrada no journal, esperando a gravação em consultas.
+    PENDENTE,
+
+    GRAVADA,
+
+    //O banco recusou a consulta, normalmente por um agendamento sincrono concorrente no mesmo horario.
+    RECUSADA
+
+}
@@ -0,0 +1,122 @@
+package med.voll.api.domain.consulta;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Travas listradas do agendamento: cada (médico, horario) e cada (paciente, dia) cai em uma de N travas,
+ * então só agendamentos que disputam o mesmo horario (ou o mesmo paciente no dia) esperam uns pelos outros.
+ *
+ * A trava é mantida até o fim da transação, depois que o commit e as atualizações dos indices em memoria
+ * já aconteceram, para que o proximo a entrar enxergue a consulta gravada.
+ * Para não haver deadlock a trava do paciente é sempre obtida antes das travas de médico, e quando o médico
+ * é sorteado a trava é apenas tentada (tentarTravarMedicoNoHorario), sem esperar.
+ * No lote (travarLote) todas as listras de pacientes são obtidas antes das de médicos, cada uma uma unica vez e em
+ * ordem crescente, assim dois lotes concorrentes também não esperam um pelo outro em ciclo.
+ * Entre instancias diferentes da aplicação a garantia fica com os indices unicos do banco.
+ * */
+@Component
+public class TravasAgenda {
+
+    @Value("${api.agenda.travas.listras:1024}")
+    private int listras;
+
+    @Value("${api.agenda.travas.espera:5s}")
+    private Duration espera;
+
+    private ReentrantLock[] travasPacientes;
+
+    private ReentrantLock[] travasMedicos;
+
+    @PostConstruct
+    void inicializar() {
+        travasPacientes = criar(listras);
+        travasMedicos = criar(listras);
+    }
+
+    public void travarPacienteNoDia(Long idPaciente, LocalDate dia) {
+        travar(travasPacientes[indice(Objects.hash(idPaciente, dia))]);
+    }
+
+    public void travarMedicoNoHorario(Long idMedico, LocalDateTime data) {
+        travar(travasMedicos[indice(Objects.hash(idMedico, data))]);
+    }
+
+    //Os médicos sorteados dos itens sem idMedico ficam de fora e são tentados depois, no sorteio.
+    public void travarLote(Collection<DadosAgendamentoConsulta> agendamentos) {
+        var pacientes = new TreeSet<Integer>();
+        var medicos = new TreeSet<Integer>();
+        for (var dados : agendamentos) {
+            pacientes.add(indice(Objects.hash(dados.idPaciente(), dados.data().toLocalDate())));
+            if (dados.idMedico() != null) {
+                medicos.add(indice(Objects.hash(dados.idMedico(), dados.data())));
+            }
+        }
+        pacientes.forEach(listra -> travar(travasPacientes[listra]));
+        medicos.forEach(listra -> travar(travasMedicos[listra]));
+    }
+
+    //Retorna false, sem esperar, quando outro agendamento está usando a trava.
+    public boolean tentarTravarMedicoNoHorario(Long idMedico, LocalDateTime data) {
+        var trava = travasMedicos[indice(Objects.hash(idMedico, data))];
+        if (!trava.tryLock()) {
+            return false;
+        }
+        liberarNoFimDaTransacao(trava);
+        return true;
+    }
+
+    private void travar(ReentrantLock trava) {
+        try {
+            if (!trava.tryLock(espera.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new CannotAcquireLockException("Tempo esgotado aguardando outro agendamento no mesmo horario");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Agendamento interrompido", ex);
+        }
+        liberarNoFimDaTransacao(trava);
+    }
+
+    private static void liberarNoFimDaTransacao(ReentrantLock trava) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            trava.unlock();
+            throw new IllegalStateException("As travas da agenda só podem ser usadas dentro de uma transação");
+        }
+
+        //afterCompletion roda na mesma thread que obteve a trava, depois dos afterCommit.
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                trava.unlock();
+            }
+        });
+    }
+
+    private int indice(int hash) {
+        //Espalha os bits altos do hash, como o HashMap, antes de escolher a listra.
+        return Math.floorMod(hash ^ (hash >>> 16), listras);
+    }
+
+    private static ReentrantLock[] criar(int quantidade) {
+        var travas = new ReentrantLock[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            travas[i] = new ReentrantLock();
+        }
+        return travas;
+    }
+
+}
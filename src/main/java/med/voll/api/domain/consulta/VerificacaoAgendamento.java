@@ -0,0 +1,67 @@
+package med.voll.api.domain.consulta;
+
+import med.voll.api.domain.ativos.RegistroAtivos;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Obtem a DadosVerificacaoAgendamento de um agendamento. Quando o IndiceOcupacaoAgenda garante que o médico e o
+ * paciente estão livres e o RegistroAtivos conhece os dois, a verificação é montada em memoria, sem ida ao banco.
+ * Nos demais casos a consulta unica ConsultaRepository.verificarAgendamento continua sendo feita.
+ * A resposta em memoria é só um filtro rapido: um conflito que o indice não conhecia é recusado pelas restrições unicas
+ * de consultas no insert e a AgendaDeConsultas devolve a mesma mensagem do validador.
+ * */
+@Component
+public class VerificacaoAgendamento {
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private IndiceOcupacaoAgenda indiceOcupacao;
+
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
+    public DadosVerificacaoAgendamento verificar(DadosAgendamentoConsulta dados) {
+        var dia = dados.data().toLocalDate();
+        var verificarMedico = indiceOcupacao.medicoPossivelmenteOcupado(dados.idMedico(), dados.data());
+        var verificarPaciente = indiceOcupacao.pacientePossivelmenteComConsultaNoDia(dados.idPaciente(), dia);
+
+        if (!verificarMedico && !verificarPaciente) {
+            var pacienteAtivo = registroAtivos.pacienteAtivo(dados.idPaciente());
+            var medicoAtivo = dados.idMedico() == null ? null : registroAtivos.medicoAtivo(dados.idMedico());
+            if (pacienteAtivo != null && (dados.idMedico() == null || medicoAtivo != null)) {
+                return new VerificacaoEmMemoria(pacienteAtivo, medicoAtivo);
+            }
+        }
+
+        return consultaRepository.verificarAgendamento(dados.idPaciente(), dados.idMedico(), dados.data(),
+                dia.atStartOfDay(), dia.plusDays(1).atStartOfDay(), verificarMedico, verificarPaciente);
+    }
+
+    private record VerificacaoEmMemoria(Boolean pacienteAtivo, Boolean medicoAtivo) implements DadosVerificacaoAgendamento {
+
+        @Override
+        public Boolean getPacienteAtivo() {
+            return pacienteAtivo;
+        }
+
+        @Override
+        public Boolean getMedicoAtivo() {
+            return medicoAtivo;
+        }
+
+        @Override
+        public Boolean getMedicoOcupadoNoHorario() {
+            return false;
+        }
+
+        @Override
+        public Boolean getPacienteComConsultaNoDia() {
+            return false;
+        }
+
+    }
+
+}
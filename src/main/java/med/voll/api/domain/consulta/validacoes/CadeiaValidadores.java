@@ -0,0 +1,100 @@
+package med.voll.api.domain.consulta.validacoes;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Executa os validadores do agendamento em etapas:
+ * primeiro os LOCAL, em sequencia e parando no primeiro erro, sem nenhuma ida ao banco;
+ * depois os de CONTEXTO, que só leem a verificação feita pela AgendaDeConsultas em uma unica consulta;
+ * por ultimo os de BANCO, também em sequencia e na thread da requisição. Eles não rodam em paralelo porque cada thread
+ * a mais precisaria de outra conexão do Hikari enquanto a requisição já segura uma, o que esgota o pool sob carga.
+ *
+ * O tempo de cada validador vai para o timer agenda.validacao (tags validador e resultado) e o validador que
+ * recusa o agendamento é anotado na ValidacaoExcepition para as metricas da AgendaDeConsultas.
+ * */
+@Component
+public class CadeiaValidadores {
+
+    //Cria uma lista com todas as classes de validalção com a implementalção da iterface
+    @Autowired
+    private List<ValidadorAgendamentoDeConsulta> validadores;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private List<ValidadorAgendamentoDeConsulta> locais;
+
+    private List<ValidadorAgendamentoDeConsulta> deContexto;
+
+    private List<ValidadorAgendamentoDeConsulta> deBanco;
+
+    private final Map<ValidadorAgendamentoDeConsulta, Medicao> medicoes = new IdentityHashMap<>();
+
+    @PostConstruct
+    void inicializar() {
+        validadores.forEach(v -> medicoes.put(v, novaMedicao(v)));
+
+        locais = validadores.stream().filter(v -> v.custo() == CustoValidacao.LOCAL).toList();
+        deContexto = validadores.stream().filter(v -> v.custo() == CustoValidacao.CONTEXTO).toList();
+        deBanco = validadores.stream().filter(v -> v.custo() == CustoValidacao.BANCO).toList();
+    }
+
+    public void validarLocais(DadosAgendamentoConsulta dados) {
+        locais.forEach(v -> medir(v, () -> v.validar(dados)));
+    }
+
+    public void validarNoBanco(ContextoAgendamento contexto) {
+        deContexto.forEach(v -> medir(v, () -> v.validar(contexto)));
+        deBanco.forEach(v -> medir(v, () -> v.validar(contexto)));
+    }
+
+    //No lote cada validador já faz uma unica consulta para todos os itens: os LOCAL rejeitam primeiro e os itens
+    //recusados não vão para as consultas.
+    public void validarLote(LoteAgendamento lote) {
+        locais.forEach(v -> v.validarLote(lote));
+        deContexto.forEach(v -> v.validarLote(lote));
+        deBanco.forEach(v -> v.validarLote(lote));
+    }
+
+    private void medir(ValidadorAgendamentoDeConsulta validador, Runnable validacao) {
+        var medicao = medicoes.get(validador);
+        var inicio = System.nanoTime();
+        try {
+            validacao.run();
+            medicao.aprovado().record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        } catch (ValidacaoExcepition ex) {
+            medicao.recusado().record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            throw ex.comValidador(medicao.nome());
+        }
+    }
+
+    private Medicao novaMedicao(ValidadorAgendamentoDeConsulta validador) {
+        var nome = ClassUtils.getUserClass(validador).getSimpleName();
+        return new Medicao(nome, timerValidacao(nome, "aprovado"), timerValidacao(nome, "recusado"));
+    }
+
+    private Timer timerValidacao(String validador, String resultado) {
+        return Timer.builder("agenda.validacao")
+                .description("Tempo de cada validador do agendamento")
+                .tag("validador", validador)
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+
+    //Timers criados uma vez por validador, fora do caminho do agendamento.
+    private record Medicao(String nome, Timer aprovado, Timer recusado) {
+    }
+
+}
@@ -0,0 +1,8 @@
+package med.voll.api.domain.consulta.validacoes;
+
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.DadosVerificacaoAgendamento;
+
+//Dados de um agendamento junto com a verificação feita no banco, repassados a cada validador da requisição.
+public record ContextoAgendamento(DadosAgendamentoConsulta dados, DadosVerificacaoAgendamento verificacao) {
+}
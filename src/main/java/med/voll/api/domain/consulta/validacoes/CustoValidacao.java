@@ -0,0 +1,13 @@
+package med.voll.api.domain.consulta.validacoes;
+
+/*
+ * Classifica os validadores pelo custo: LOCAL só olha os dados recebidos, CONTEXTO usa a verificação
+ * do agendamento já carregada (ContextoAgendamento) e BANCO faz as proprias consultas.
+ * */
+public enum CustoValidacao {
+
+    LOCAL,
+    CONTEXTO,
+    BANCO;
+
+}
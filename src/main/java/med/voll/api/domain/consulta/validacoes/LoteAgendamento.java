@@ -0,0 +1,56 @@
+package med.voll.api.domain.consulta.validacoes;
+
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Lote de agendamentos validado de uma só vez pelos validadores.
+ * Cada item rejeitado guarda a mensagem de erro e deixa de ser entregue aos proximos validadores.
+ * */
+public class LoteAgendamento {
+
+    private final List<Item> itens = new ArrayList<>();
+    private final String[] erros;
+
+    public LoteAgendamento(List<DadosAgendamentoConsulta> dados) {
+        this.erros = new String[dados.size()];
+        for (int i = 0; i < dados.size(); i++) {
+            itens.add(new Item(i, dados.get(i)));
+            if (dados.get(i) == null) {
+                erros[i] = "Agendamento inválido";
+            }
+        }
+    }
+
+    public List<Item> pendentes() {
+        return itens.stream().filter(item -> erros[item.indice()] == null).toList();
+    }
+
+    public void rejeitar(Item item, String mensagem) {
+        if (erros[item.indice()] == null) {
+            erros[item.indice()] = mensagem;
+        }
+    }
+
+    public String erro(int indice) {
+        return erros[indice];
+    }
+
+    //Valores distintos e não nulos de um campo dos itens pendentes, usados como parametro do "in" das consultas.
+    public <T> List<T> distintos(Function<DadosAgendamentoConsulta, T> campo) {
+        return pendentes().stream()
+                .map(item -> campo.apply(item.dados()))
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    public record Item(int indice, DadosAgendamentoConsulta dados) {
+    }
+
+}
@@ -1,5 +1,6 @@
 package med.voll.api.domain.consulta.validacoes;
 
+import med.voll.api.domain.ValidacaoExcepition;
 import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
 
 /*
@@ -9,4 +10,28 @@ public interface ValidadorAgendamentoDeConsulta {
 
     void validar(DadosAgendamentoConsulta dados);
 
+    //Validadores de CONTEXTO sobrescrevem este metodo para usar a verificação já feita em vez de ir ao banco.
+    default void validar(ContextoAgendamento contexto) {
+        validar(contexto.dados());
+    }
+
+    //Validadores LOCAL rodam primeiro, na thread da requisição; os de BANCO por ultimo (ver CadeiaValidadores).
+    default CustoValidacao custo() {
+        return CustoValidacao.BANCO;
+    }
+
+    /*
+     * Valida um lote inteiro de agendamentos. A implementação padrão valida item a item;
+     * os validadores que consultam o banco sobrescrevem para fazer uma unica consulta para o lote todo.
+     * */
+    default void validarLote(LoteAgendamento lote) {
+        for (var item : lote.pendentes()) {
+            try {
+                validar(item.dados());
+            } catch (ValidacaoExcepition ex) {
+                lote.rejeitar(item, ex.getMessage());
+            }
+        }
+    }
+
 }
@@ -2,6 +2,7 @@ package med.voll.api.domain.consulta.validacoes;
 
 import med.voll.api.domain.ValidacaoExcepition;
 import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.GradeHorarios;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
@@ -15,6 +16,8 @@ import java.time.LocalDateTime;
 @Component
 public class ValidadorHorarioAntecedencia implements ValidadorAgendamentoDeConsulta {
 
+    public static final String MENSAGEM = "Consulta deve ser agendada com antecedência minima de 30 minutos!";
+
     public void validar(DadosAgendamentoConsulta dados){
         var dataConsulta = dados.data();
 
@@ -24,10 +27,15 @@ public class ValidadorHorarioAntecedencia implements ValidadorAgendamentoDeConsu
         //pega a duração em minutos.
         var diferencaEmMinutos = Duration.between(agora, dataConsulta).toMinutes();
 
-        if(diferencaEmMinutos < 30){
-            throw new ValidacaoExcepition("Consulta deve ser agendada com antecedência minima de 30 minutos!");
+        if(diferencaEmMinutos < GradeHorarios.ANTECEDENCIA_MINIMA_MINUTOS){
+            throw new ValidacaoExcepition(MENSAGEM);
         }
 
     }
 
+    @Override
+    public CustoValidacao custo() {
+        return CustoValidacao.LOCAL;
+    }
+
 }
@@ -9,6 +9,8 @@ import java.time.DayOfWeek;
 @Component
 public class ValidadorHorarioFuncionamentoClinica implements ValidadorAgendamentoDeConsulta {
 
+    public static final String MENSAGEM = "Consulta fora do horário de funcionamento da cliníca";
+
     public void validar(DadosAgendamentoConsulta dados){
 
         var dataConsulta = dados.data();
@@ -24,8 +26,14 @@ public class ValidadorHorarioFuncionamentoClinica implements ValidadorAgendament
         var depoisDoEncerramentoDaClinica = dataConsulta.getHour() > 18;
 
         if(domingo || antesDaAberturaDaClinica || depoisDoEncerramentoDaClinica){
-            throw new ValidacaoExcepition("Consulta fora do horário de funcionamento da cliníca");
+            throw new ValidacaoExcepition(MENSAGEM);
         }
 
     }
+
+    @Override
+    public CustoValidacao custo() {
+        return CustoValidacao.LOCAL;
+    }
+
 }
@@ -1,6 +1,7 @@
 package med.voll.api.domain.consulta.validacoes;
 
 import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.ativos.RegistroAtivos;
 import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
 import med.voll.api.domain.medico.MedicoRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,18 +10,54 @@ import org.springframework.stereotype.Component;
 @Component
 public class ValidadorMedicoAtivo implements ValidadorAgendamentoDeConsulta {
 
+    public static final String MENSAGEM = "Consulta não pode ser agendada com o médico excluido!";
+
     @Autowired
     private MedicoRepository medicoRepository;
 
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
     public void validar(DadosAgendamentoConsulta dados){
         //Escolha do medico opcional
         if (dados.idMedico() == null) {
             return;
         }
 
-        var medicoEstaAtivo = medicoRepository.findAtivoById(dados.idMedico());
+        var medicoEstaAtivo = registroAtivos.medicoAtivo(dados.idMedico());
+        if (medicoEstaAtivo == null) {
+            medicoEstaAtivo = medicoRepository.findAtivoById(dados.idMedico());
+        }
         if(!medicoEstaAtivo) {
-            throw new ValidacaoExcepition("Consulta não pode ser agendada com o médico excluido!");
+            throw new ValidacaoExcepition(MENSAGEM);
+        }
+    }
+
+    @Override
+    public void validarLote(LoteAgendamento lote) {
+        var idsMedicos = lote.distintos(DadosAgendamentoConsulta::idMedico);
+        if (idsMedicos.isEmpty()) {
+            return;
         }
+
+        var ativos = registroAtivos.medicosAtivos(idsMedicos, medicoRepository::buscarIdsAtivos);
+        for (var item : lote.pendentes()) {
+            var idMedico = item.dados().idMedico();
+            if (idMedico != null && !ativos.contains(idMedico)) {
+                lote.rejeitar(item, MENSAGEM);
+            }
+        }
+    }
+
+    @Override
+    public void validar(ContextoAgendamento contexto) {
+        if (contexto.dados().idMedico() != null && !Boolean.TRUE.equals(contexto.verificacao().getMedicoAtivo())) {
+            throw new ValidacaoExcepition(MENSAGEM);
+        }
+    }
+
+    @Override
+    public CustoValidacao custo() {
+        return CustoValidacao.CONTEXTO;
     }
 }
@@ -3,19 +3,71 @@ package med.voll.api.domain.consulta.validacoes;
 import med.voll.api.domain.ValidacaoExcepition;
 import med.voll.api.domain.consulta.ConsultaRepository;
 import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.IndiceOcupacaoAgenda;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
+import java.util.HashSet;
+
 @Component
 public class ValidadorMedicoComOutraConsultaNoMesmoHorario implements ValidadorAgendamentoDeConsulta{
 
+    public static final String MENSAGEM = "Médico ja possui outra consulta agendada nesse mesmo horário";
+
     @Autowired
     private ConsultaRepository repository;
 
+    @Autowired
+    private IndiceOcupacaoAgenda indiceOcupacao;
+
     public void validar(DadosAgendamentoConsulta dados){
-        var medicoPossuiOutraConsultaNoMesmoHorario = repository.existsByMedicoIdAndData(dados.idMedico(), dados.data());
+        //Horario livre no indice dispensa a consulta ao banco de dados.
+        if (!indiceOcupacao.medicoPossivelmenteOcupado(dados.idMedico(), dados.data())) {
+            return;
+        }
+
+        var medicoPossuiOutraConsultaNoMesmoHorario = repository.existsByMedicoIdAndDataAndCanceladaFalse(dados.idMedico(), dados.data());
         if(medicoPossuiOutraConsultaNoMesmoHorario) {
-            throw new ValidacaoExcepition("Médico ja possui outra consulta agendada nesse mesmo horário");
+            throw new ValidacaoExcepition(MENSAGEM);
         }
     }
+
+    @Override
+    public void validarLote(LoteAgendamento lote) {
+        //Somente os itens que o indice não consegue garantir como livres vão para a consulta ao banco.
+        var suspeitos = lote.pendentes().stream()
+                .filter(item -> indiceOcupacao.medicoPossivelmenteOcupado(item.dados().idMedico(), item.dados().data()))
+                .toList();
+        if (suspeitos.isEmpty()) {
+            return;
+        }
+
+        var idsMedicos = suspeitos.stream().map(item -> item.dados().idMedico()).distinct().toList();
+        var datas = suspeitos.stream().map(item -> item.dados().data()).distinct().toList();
+        var ocupados = new HashSet<MedicoNoHorario>();
+        repository.buscarOcupacaoDosMedicos(idsMedicos, datas)
+                .forEach(o -> ocupados.add(new MedicoNoHorario(o.idMedico(), o.data())));
+
+        for (var item : suspeitos) {
+            if (ocupados.contains(new MedicoNoHorario(item.dados().idMedico(), item.dados().data()))) {
+                lote.rejeitar(item, MENSAGEM);
+            }
+        }
+    }
+
+    private record MedicoNoHorario(Long idMedico, LocalDateTime data) {
+    }
+
+    @Override
+    public void validar(ContextoAgendamento contexto) {
+        if (Boolean.TRUE.equals(contexto.verificacao().getMedicoOcupadoNoHorario())) {
+            throw new ValidacaoExcepition(MENSAGEM);
+        }
+    }
+
+    @Override
+    public CustoValidacao custo() {
+        return CustoValidacao.CONTEXTO;
+    }
 }
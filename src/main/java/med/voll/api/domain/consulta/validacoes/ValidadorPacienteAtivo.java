@@ -1,6 +1,7 @@
 package med.voll.api.domain.consulta.validacoes;
 
 import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.ativos.RegistroAtivos;
 import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
 import med.voll.api.domain.paciente.PacienteRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,15 +9,51 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class ValidadorPacienteAtivo implements ValidadorAgendamentoDeConsulta{
+
+    public static final String MENSAGEM = "Consulta não pode ser agendada com paciente excluido";
+
     @Autowired
     private PacienteRepository repository;
 
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
     public void validar(DadosAgendamentoConsulta dados){
-        var pacienteEstaAtivo = repository.findAtivoById(dados.idPaciente());
+        var pacienteEstaAtivo = registroAtivos.pacienteAtivo(dados.idPaciente());
+        if (pacienteEstaAtivo == null) {
+            pacienteEstaAtivo = repository.findAtivoById(dados.idPaciente());
+        }
         if (!pacienteEstaAtivo){
-            throw new ValidacaoExcepition("Consulta não pode ser agendada com paciente excluido");
+            throw new ValidacaoExcepition(MENSAGEM);
         }
 
 
     }
+
+    @Override
+    public void validarLote(LoteAgendamento lote) {
+        var idsPacientes = lote.distintos(DadosAgendamentoConsulta::idPaciente);
+        if (idsPacientes.isEmpty()) {
+            return;
+        }
+
+        var ativos = registroAtivos.pacientesAtivos(idsPacientes, repository::buscarIdsAtivos);
+        for (var item : lote.pendentes()) {
+            if (!ativos.contains(item.dados().idPaciente())) {
+                lote.rejeitar(item, MENSAGEM);
+            }
+        }
+    }
+
+    @Override
+    public void validar(ContextoAgendamento contexto) {
+        if (!Boolean.TRUE.equals(contexto.verificacao().getPacienteAtivo())) {
+            throw new ValidacaoExcepition(MENSAGEM);
+        }
+    }
+
+    @Override
+    public CustoValidacao custo() {
+        return CustoValidacao.CONTEXTO;
+    }
 }
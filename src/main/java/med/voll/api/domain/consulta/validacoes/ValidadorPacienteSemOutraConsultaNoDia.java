@@ -3,21 +3,76 @@ package med.voll.api.domain.consulta.validacoes;
 import med.voll.api.domain.ValidacaoExcepition;
 import med.voll.api.domain.consulta.ConsultaRepository;
 import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.DadosOcupacaoConsulta;
+import med.voll.api.domain.consulta.IndiceOcupacaoAgenda;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Component
 public class ValidadorPacienteSemOutraConsultaNoDia implements ValidadorAgendamentoDeConsulta{
 
+    public static final String MENSAGEM = "Paciente já possui uma consulta agendada nesse dia!";
+
     @Autowired
     private ConsultaRepository repository;
 
+    @Autowired
+    private IndiceOcupacaoAgenda indiceOcupacao;
+
     public void validar(DadosAgendamentoConsulta dados) {
+        //Dia livre no indice dispensa a consulta ao banco de dados.
+        if (!indiceOcupacao.pacientePossivelmenteComConsultaNoDia(dados.idPaciente(), dados.data().toLocalDate())) {
+            return;
+        }
+
         var primeiroHorario = dados.data().withHour(7);
         var ultimoHorario = dados.data().withHour(18);
-        var pacientePossuiOutraConsultaNoDia = repository.existsByPacienteIdAndDataBetween(dados.idPaciente(), primeiroHorario,ultimoHorario);
+        var pacientePossuiOutraConsultaNoDia = repository.existsByPacienteIdAndDataBetweenAndCanceladaFalse(dados.idPaciente(), primeiroHorario,ultimoHorario);
         if (pacientePossuiOutraConsultaNoDia){
-            throw new ValidacaoExcepition("Paciente já possui uma consulta agendada nesse dia!");
+            throw new ValidacaoExcepition(MENSAGEM);
+        }
+    }
+
+    @Override
+    public void validarLote(LoteAgendamento lote) {
+        var suspeitos = lote.pendentes().stream()
+                .filter(item -> indiceOcupacao.pacientePossivelmenteComConsultaNoDia(item.dados().idPaciente(), item.dados().data().toLocalDate()))
+                .toList();
+        if (suspeitos.isEmpty()) {
+            return;
         }
+
+        //Uma unica consulta cobrindo do primeiro ao ultimo dia dos itens suspeitos.
+        var idsPacientes = suspeitos.stream().map(item -> item.dados().idPaciente()).distinct().toList();
+        var inicio = suspeitos.stream().map(item -> item.dados().data().withHour(7)).min(Comparator.naturalOrder()).get();
+        var fim = suspeitos.stream().map(item -> item.dados().data().withHour(18)).max(Comparator.naturalOrder()).get();
+        var consultasPorPaciente = repository.buscarOcupacaoDosPacientes(idsPacientes, inicio, fim).stream()
+                .collect(Collectors.groupingBy(DadosOcupacaoConsulta::idPaciente));
+
+        for (var item : suspeitos) {
+            var primeiroHorario = item.dados().data().withHour(7);
+            var ultimoHorario = item.dados().data().withHour(18);
+            var pacientePossuiOutraConsultaNoDia = consultasPorPaciente.getOrDefault(item.dados().idPaciente(), List.of()).stream()
+                    .anyMatch(c -> !c.data().isBefore(primeiroHorario) && !c.data().isAfter(ultimoHorario));
+            if (pacientePossuiOutraConsultaNoDia) {
+                lote.rejeitar(item, MENSAGEM);
+            }
+        }
+    }
+
+    @Override
+    public void validar(ContextoAgendamento contexto) {
+        if (Boolean.TRUE.equals(contexto.verificacao().getPacienteComConsultaNoDia())) {
+            throw new ValidacaoExcepition(MENSAGEM);
+        }
+    }
+
+    @Override
+    public CustoValidacao custo() {
+        return CustoValidacao.CONTEXTO;
     }
 }
@@ -0,0 +1,228 @@
+package med.voll.api.domain.medico;
+
+import jakarta.persistence.EntityManagerFactory;
+import med.voll.api.domain.CursorPaginacao;
+import med.voll.api.domain.DadosPaginaCursor;
+import med.voll.api.domain.ExecucaoAposCommit;
+import med.voll.api.domain.ativos.RegistroAtivos;
+import med.voll.api.domain.consulta.CalendarioDisponibilidade;
+import med.voll.api.domain.consulta.DisponibilidadeMedicos;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/*
+ * Regras de cadastro de médicos usadas pelo MedicoController.
+ *
+ * O detalhamento por id (cache "medicos") e as primeiras paginas da listagem (cache "listagemMedicos")
+ * ficam em cache. Cadastro, atualização e exclusão removem as entradas afetadas depois do commit,
+ * para que uma leitura concorrente não coloque de volta no cache o valor anterior.
+ * */
+@Service
+public class CadastroDeMedicos {
+
+    public static final String CACHE_DETALHAMENTO = "medicos";
+    public static final String CACHE_LISTAGEM = "listagemMedicos";
+
+    //Somente as primeiras paginas são guardadas, as demais são consultadas direto no banco.
+    public static final int PAGINAS_EM_CACHE = 3;
+
+    public static final int TAMANHO_MAXIMO_PAGINA_CURSOR = 100;
+
+    static final String CRM_JA_CADASTRADO = "CRM já cadastrado!";
+    static final String EMAIL_JA_CADASTRADO = "Email já cadastrado!";
+
+    private static final String INSERT_LOTE = """
+            insert into medicos(nome, email, telefone, crm, especialidade, logradouro, bairro, cep, complemento, numero, uf, cidade, ativo)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
+            """;
+
+    @Autowired
+    private MedicoRepository repository;
+
+    @Autowired
+    private DisponibilidadeMedicos disponibilidadeMedicos;
+
+    @Autowired
+    private CalendarioDisponibilidade calendario;
+
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Transactional
+    public DadosDetalhamentoMedico cadastrar(DadosCadastroMedico dados) {
+        var medico = new Medico(dados);
+        repository.save(medico);
+        disponibilidadeMedicos.medicoCadastrado(medico);
+        calendario.medicoCadastrado(medico);
+        registroAtivos.medicoCadastrado(medico.getId());
+        removerListagemDoCache();
+
+        return new DadosDetalhamentoMedico(medico);
+    }
+
+    /*
+     * Cadastro em lote usado na importação, em uma unica transação. As linhas com crm ou email já cadastrados, no banco
+     * ou em uma linha anterior do lote, voltam com a mensagem de erro na mesma posição (null para as cadastradas).
+     * As demais são inseridas em um batch do JDBC, sem entidades no contexto de persistencia, e as estruturas em
+     * memoria recebem o lote todo de uma vez.
+     * */
+    @Transactional
+    public List<String> cadastrarLote(List<DadosCadastroMedico> dados) {
+        var crms = new HashSet<>(repository.buscarCrmsExistentes(dados.stream().map(DadosCadastroMedico::crm).toList()));
+        var emails = new HashSet<>(repository.buscarEmailsExistentes(dados.stream().map(DadosCadastroMedico::email).toList()));
+
+        var erros = new ArrayList<String>(dados.size());
+        var novos = new ArrayList<DadosCadastroMedico>(dados.size());
+        for (var medico : dados) {
+            if (crms.contains(medico.crm())) {
+                erros.add(CRM_JA_CADASTRADO);
+            } else if (emails.contains(medico.email())) {
+                erros.add(EMAIL_JA_CADASTRADO);
+            } else {
+                crms.add(medico.crm());
+                emails.add(medico.email());
+                novos.add(medico);
+                erros.add(null);
+            }
+        }
+        if (novos.isEmpty()) {
+            return erros;
+        }
+
+        var ids = jdbc.execute((ConnectionCallback<List<Long>>) conexao -> inserir(conexao, novos));
+        var especialidades = new HashMap<Long, Especialidade>();
+        for (int i = 0; i < ids.size(); i++) {
+            especialidades.put(ids.get(i), novos.get(i).especialidade());
+        }
+        disponibilidadeMedicos.medicosCadastrados(especialidades.values());
+        calendario.medicosCadastrados(especialidades);
+        registroAtivos.medicosCadastrados(ids);
+        removerListagemDoCache();
+        removerConsultasDoCacheSegundoNivel();
+
+        return erros;
+    }
+
+    @Cacheable(cacheNames = CACHE_LISTAGEM,
+            key = "#paginacao.pageNumber + '-' + #paginacao.pageSize + '-' + #paginacao.sort",
+            condition = "#paginacao.pageNumber < T(med.voll.api.domain.medico.CadastroDeMedicos).PAGINAS_EM_CACHE")
+    @Transactional(readOnly = true)
+    public Page<DadosListagemMedico> listar(Pageable paginacao) {
+        return repository.findAllByAtivoTrue(paginacao).map(DadosListagemMedico::new);
+    }
+
+    //Listagem por (nome, id) a partir do cursor recebido; sem cursor começa do inicio.
+    @Transactional(readOnly = true)
+    public DadosPaginaCursor<DadosListagemMedico> listarComCursor(String cursor, int tamanho) {
+        tamanho = Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA_CURSOR));
+        var limite = PageRequest.of(0, tamanho + 1);
+
+        List<DadosListagemMedico> registros;
+        if (cursor == null) {
+            registros = repository.listarAtivosPorNome(limite);
+        } else {
+            var posicao = CursorPaginacao.decodificar(cursor);
+            registros = repository.listarAtivosPorNomeApos(posicao.nome(), posicao.id(), limite);
+        }
+        return DadosPaginaCursor.de(registros, tamanho, r -> new CursorPaginacao(r.nome(), r.id()));
+    }
+
+    @Cacheable(cacheNames = CACHE_DETALHAMENTO, key = "#id")
+    @Transactional(readOnly = true)
+    public DadosDetalhamentoMedico detalhar(Long id) {
+        return new DadosDetalhamentoMedico(repository.getReferenceById(id));
+    }
+
+    @Transactional
+    public DadosDetalhamentoMedico atualizar(DadosAtualizacaoMedico dados) {
+        var medico = repository.getReferenceById(dados.id());
+        medico.atualizarInformacoes(dados);
+        removerDoCache(dados.id());
+
+        return new DadosDetalhamentoMedico(medico);
+    }
+
+    @Transactional
+    public void excluir(Long id) {
+        var medico = repository.getReferenceById(id);
+        medico.excluir();
+        disponibilidadeMedicos.medicoExcluido(medico);
+        calendario.medicoExcluido(medico);
+        registroAtivos.medicoExcluido(id);
+        removerDoCache(id);
+    }
+
+    private void removerDoCache(Long id) {
+        ExecucaoAposCommit.executar(() -> cacheManager.getCache(CACHE_DETALHAMENTO).evict(id));
+        removerListagemDoCache();
+    }
+
+    private void removerListagemDoCache() {
+        ExecucaoAposCommit.executar(() -> cacheManager.getCache(CACHE_LISTAGEM).clear());
+    }
+
+    //O insert pelo JDBC não passa pelo Hibernate: um findAtivoById de um id que ainda não existia pode estar no cache de consultas.
+    private void removerConsultasDoCacheSegundoNivel() {
+        ExecucaoAposCommit.executar(() -> entityManagerFactory.getCache().unwrap(Cache.class).evictDefaultQueryRegion());
+    }
+
+    //Os ids gerados voltam na ordem do batch.
+    private static List<Long> inserir(Connection conexao, List<DadosCadastroMedico> medicos) throws SQLException {
+        try (var comando = conexao.prepareStatement(INSERT_LOTE, new String[]{"id"})) {
+            for (var medico : medicos) {
+                var endereco = medico.endereco();
+                comando.setString(1, medico.nome());
+                comando.setString(2, medico.email());
+                comando.setString(3, medico.telefone());
+                comando.setString(4, medico.crm());
+                comando.setString(5, medico.especialidade().name());
+                comando.setString(6, endereco.logradouro());
+                comando.setString(7, endereco.bairro());
+                comando.setString(8, endereco.cep());
+                comando.setString(9, endereco.complemento());
+                comando.setString(10, endereco.numero());
+                comando.setString(11, endereco.uf());
+                comando.setString(12, endereco.cidade());
+                comando.addBatch();
+            }
+            comando.executeBatch();
+
+            var ids = new ArrayList<Long>(medicos.size());
+            try (var chaves = comando.getGeneratedKeys()) {
+                while (chaves.next()) {
+                    ids.add(chaves.getLong(1));
+                }
+            }
+            if (ids.size() != medicos.size()) {
+                throw new IllegalStateException("Batch de médicos retornou " + ids.size() + " ids para " + medicos.size() + " linhas");
+            }
+            return ids;
+        }
+    }
+
+}
@@ -0,0 +1,10 @@
+package med.voll.api.domain.medico;
+
+import java.time.LocalDateTime;
+
+//Linha plana usada na exportação, montada direto na query para não carregar entidades no contexto de persistencia.
+public record DadosExportacaoMedico(Long id, String nome, String email, String telefone, String crm,
+                                    Especialidade especialidade, String logradouro, String numero, String complemento,
+                                    String bairro, String cidade, String uf, String cep, Boolean ativo,
+                                    LocalDateTime atualizadoEm) {
+}
@@ -1,13 +1,17 @@
 package med.voll.api.domain.medico;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.time.LocalDateTime;
-
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface MedicoRepository extends JpaRepository<Medico, Long> {
     Page<Medico> findAllByAtivoTrue(Pageable paginacao);
@@ -23,12 +27,45 @@ public interface MedicoRepository extends JpaRepository<Medico, Long> {
                 select c.medico.id from Consulta c
                 where
                 c.data = :data
+                and
+                c.cancelada = false
             )
             order by rand()
             limit 1
         """)
     Medico escolherMedicoAleatorioLivreNaData(Especialidade especialidade, LocalDateTime data);
 
+    @Query("""
+            select m.id from Medico m
+            where
+            m.ativo = true
+            and
+            m.especialidade = :especialidade
+            and
+            not exists(
+                select c.id from Consulta c
+                where
+                c.medico = m
+                and
+                c.data = :data
+                and
+                c.cancelada = false
+            )
+            """)
+    List<Long> buscarIdsLivresNaData(Especialidade especialidade, LocalDateTime data);
+
+    @Query("""
+            select m.id from Medico m
+            where
+            m.ativo = true
+            and
+            m.especialidade = :especialidade
+            order by m.id
+            """)
+    List<Long> buscarIdsAtivosDaEspecialidade(Especialidade especialidade);
+
+    //Resultado no cache de consultas (CacheSegundoNivel), invalidado pelo Hibernate a cada escrita na tabela.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("""
             select m.ativo 
             from Medico m 
@@ -36,4 +73,84 @@ public interface MedicoRepository extends JpaRepository<Medico, Long> {
             m.id = :id
             """)
     Boolean findAtivoById(Long id);
+
+    @Query("""
+            select m.id
+            from Medico m
+            where
+            m.id in :ids
+            """)
+    List<Long> buscarIdsExistentes(Collection<Long> ids);
+
+    @Query("""
+            select m.id
+            from Medico m
+            where
+            m.id in :ids
+            and
+            m.ativo = true
+            """)
+    List<Long> buscarIdsAtivos(Collection<Long> ids);
+
+    //Usados na importação para recusar as linhas que violariam as colunas unicas antes do insert em lote.
+    @Query("""
+            select m.crm
+            from Medico m
+            where
+            m.crm in :crms
+            """)
+    List<String> buscarCrmsExistentes(Collection<String> crms);
+
+    @Query("""
+            select m.email
+            from Medico m
+            where
+            m.email in :emails
+            """)
+    List<String> buscarEmailsExistentes(Collection<String> emails);
+
+    //Listagem por cursor: a pagina seguinte começa depois do (nome, id) do ultimo registro e não executa count(*).
+    @Query("""
+            select new med.voll.api.domain.medico.DadosListagemMedico(m.id, m.nome, m.email, m.crm, m.especialidade)
+            from Medico m
+            where
+            m.ativo = true
+            order by m.nome, m.id
+            """)
+    List<DadosListagemMedico> listarAtivosPorNome(Pageable limite);
+
+    @Query("""
+            select new med.voll.api.domain.medico.DadosListagemMedico(m.id, m.nome, m.email, m.crm, m.especialidade)
+            from Medico m
+            where
+            m.ativo = true
+            and
+            (m.nome > :nome or (m.nome = :nome and m.id > :id))
+            order by m.nome, m.id
+            """)
+    List<DadosListagemMedico> listarAtivosPorNomeApos(String nome, Long id, Pageable limite);
+
+    //Exportação incremental: cursor do banco lido aos poucos (fetch size) e sem entidades gerenciadas.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new med.voll.api.domain.medico.DadosExportacaoMedico(m.id, m.nome, m.email, m.telefone, m.crm,
+                m.especialidade, m.endereco.logradouro, m.endereco.numero, m.endereco.complemento, m.endereco.bairro,
+                m.endereco.cidade, m.endereco.uf, m.endereco.cep, m.ativo, m.atualizadoEm)
+            from Medico m
+            where
+            m.atualizadoEm >= :desde
+            order by m.id
+            """)
+    Stream<DadosExportacaoMedico> exportarAtualizadosDesde(LocalDateTime desde);
+
+    @Query("""
+            select new med.voll.api.domain.medico.DadosEspecialidadeMedico(m.id, m.especialidade)
+            from Medico m
+            where
+            m.ativo = true
+            """)
+    List<DadosEspecialidadeMedico> listarEspecialidadesDosAtivos();
 }
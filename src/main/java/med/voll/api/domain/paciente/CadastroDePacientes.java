@@ -0,0 +1,207 @@
+package med.voll.api.domain.paciente;
+
+import jakarta.persistence.EntityManagerFactory;
+import med.voll.api.domain.CursorPaginacao;
+import med.voll.api.domain.DadosPaginaCursor;
+import med.voll.api.domain.ExecucaoAposCommit;
+import med.voll.api.domain.ativos.RegistroAtivos;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/*
+ * Regras de cadastro de pacientes usadas pelo PacienteController.
+ *
+ * O detalhamento por id (cache "pacientes") e as primeiras paginas da listagem (cache "listagemPacientes")
+ * ficam em cache. Cadastro, atualização e exclusão removem as entradas afetadas depois do commit,
+ * para que uma leitura concorrente não coloque de volta no cache o valor anterior.
+ * */
+@Service
+public class CadastroDePacientes {
+
+    public static final String CACHE_DETALHAMENTO = "pacientes";
+    public static final String CACHE_LISTAGEM = "listagemPacientes";
+
+    //Somente as primeiras paginas são guardadas, as demais são consultadas direto no banco.
+    public static final int PAGINAS_EM_CACHE = 3;
+
+    public static final int TAMANHO_MAXIMO_PAGINA_CURSOR = 100;
+
+    static final String CPF_JA_CADASTRADO = "CPF já cadastrado!";
+    static final String EMAIL_JA_CADASTRADO = "Email já cadastrado!";
+
+    private static final String INSERT_LOTE = """
+            insert into pacientes(nome, email, telefone, cpf, logradouro, bairro, cep, complemento, numero, uf, cidade, ativo)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, true)
+            """;
+
+    @Autowired
+    private PacienteRepository repository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Transactional
+    public DadosDetalhamentoPaciente cadastrar(DadosCadastroPaciente dados) {
+        var paciente = new Paciente(dados);
+        repository.save(paciente);
+        registroAtivos.pacienteCadastrado(paciente.getId());
+        removerListagemDoCache();
+
+        return new DadosDetalhamentoPaciente(paciente);
+    }
+
+    /*
+     * Cadastro em lote usado na importação, em uma unica transação. As linhas com cpf ou email já cadastrados, no banco
+     * ou em uma linha anterior do lote, voltam com a mensagem de erro na mesma posição (null para as cadastradas).
+     * As demais são inseridas em um batch do JDBC, sem entidades no contexto de persistencia.
+     * */
+    @Transactional
+    public List<String> cadastrarLote(List<DadosCadastroPaciente> dados) {
+        var cpfs = new HashSet<>(repository.buscarCpfsExistentes(dados.stream().map(DadosCadastroPaciente::cpf).toList()));
+        var emails = new HashSet<>(repository.buscarEmailsExistentes(dados.stream().map(DadosCadastroPaciente::email).toList()));
+
+        var erros = new ArrayList<String>(dados.size());
+        var novos = new ArrayList<DadosCadastroPaciente>(dados.size());
+        for (var paciente : dados) {
+            if (cpfs.contains(paciente.cpf())) {
+                erros.add(CPF_JA_CADASTRADO);
+            } else if (emails.contains(paciente.email())) {
+                erros.add(EMAIL_JA_CADASTRADO);
+            } else {
+                cpfs.add(paciente.cpf());
+                emails.add(paciente.email());
+                novos.add(paciente);
+                erros.add(null);
+            }
+        }
+        if (novos.isEmpty()) {
+            return erros;
+        }
+
+        var ids = jdbc.execute((ConnectionCallback<List<Long>>) conexao -> inserir(conexao, novos));
+        registroAtivos.pacientesCadastrados(ids);
+        removerListagemDoCache();
+        removerConsultasDoCacheSegundoNivel();
+
+        return erros;
+    }
+
+    @Cacheable(cacheNames = CACHE_LISTAGEM,
+            key = "#paginacao.pageNumber + '-' + #paginacao.pageSize + '-' + #paginacao.sort",
+            condition = "#paginacao.pageNumber < T(med.voll.api.domain.paciente.CadastroDePacientes).PAGINAS_EM_CACHE")
+    @Transactional(readOnly = true)
+    public Page<DadosListagemPaciente> listar(Pageable paginacao) {
+        return repository.findAllByAtivoTrue(paginacao).map(DadosListagemPaciente::new);
+    }
+
+    //Listagem por (nome, id) a partir do cursor recebido; sem cursor começa do inicio.
+    @Transactional(readOnly = true)
+    public DadosPaginaCursor<DadosListagemPaciente> listarComCursor(String cursor, int tamanho) {
+        tamanho = Math.max(1, Math.min(tamanho, TAMANHO_MAXIMO_PAGINA_CURSOR));
+        var limite = PageRequest.of(0, tamanho + 1);
+
+        List<DadosListagemPaciente> registros;
+        if (cursor == null) {
+            registros = repository.listarAtivosPorNome(limite);
+        } else {
+            var posicao = CursorPaginacao.decodificar(cursor);
+            registros = repository.listarAtivosPorNomeApos(posicao.nome(), posicao.id(), limite);
+        }
+        return DadosPaginaCursor.de(registros, tamanho, r -> new CursorPaginacao(r.nome(), r.id()));
+    }
+
+    @Cacheable(cacheNames = CACHE_DETALHAMENTO, key = "#id")
+    @Transactional(readOnly = true)
+    public DadosDetalhamentoPaciente detalhar(Long id) {
+        return new DadosDetalhamentoPaciente(repository.getReferenceById(id));
+    }
+
+    @Transactional
+    public DadosDetalhamentoPaciente atualizar(DadosAtualizacaoPaciente dados) {
+        var paciente = repository.getReferenceById(dados.id());
+        paciente.atualizarInformacoes(dados);
+        removerDoCache(dados.id());
+
+        return new DadosDetalhamentoPaciente(paciente);
+    }
+
+    @Transactional
+    public void excluir(Long id) {
+        var paciente = repository.getReferenceById(id);
+        paciente.excluir();
+        registroAtivos.pacienteExcluido(id);
+        removerDoCache(id);
+    }
+
+    private void removerDoCache(Long id) {
+        ExecucaoAposCommit.executar(() -> cacheManager.getCache(CACHE_DETALHAMENTO).evict(id));
+        removerListagemDoCache();
+    }
+
+    private void removerListagemDoCache() {
+        ExecucaoAposCommit.executar(() -> cacheManager.getCache(CACHE_LISTAGEM).clear());
+    }
+
+    //O insert pelo JDBC não passa pelo Hibernate: um findAtivoById de um id que ainda não existia pode estar no cache de consultas.
+    private void removerConsultasDoCacheSegundoNivel() {
+        ExecucaoAposCommit.executar(() -> entityManagerFactory.getCache().unwrap(Cache.class).evictDefaultQueryRegion());
+    }
+
+    //Os ids gerados voltam na ordem do batch.
+    private static List<Long> inserir(Connection conexao, List<DadosCadastroPaciente> pacientes) throws SQLException {
+        try (var comando = conexao.prepareStatement(INSERT_LOTE, new String[]{"id"})) {
+            for (var paciente : pacientes) {
+                var endereco = paciente.endereco();
+                comando.setString(1, paciente.nome());
+                comando.setString(2, paciente.email());
+                comando.setString(3, paciente.telefone());
+                comando.setString(4, paciente.cpf());
+                comando.setString(5, endereco.logradouro());
+                comando.setString(6, endereco.bairro());
+                comando.setString(7, endereco.cep());
+                comando.setString(8, endereco.complemento());
+                comando.setString(9, endereco.numero());
+                comando.setString(10, endereco.uf());
+                comando.setString(11, endereco.cidade());
+                comando.addBatch();
+            }
+            comando.executeBatch();
+
+            var ids = new ArrayList<Long>(pacientes.size());
+            try (var chaves = comando.getGeneratedKeys()) {
+                while (chaves.next()) {
+                    ids.add(chaves.getLong(1));
+                }
+            }
+            if (ids.size() != pacientes.size()) {
+                throw new IllegalStateException("Batch de pacientes retornou " + ids.size() + " ids para " + pacientes.size() + " linhas");
+            }
+            return ids;
+        }
+    }
+
+}
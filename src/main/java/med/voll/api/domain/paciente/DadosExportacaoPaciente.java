@@ -0,0 +1,10 @@
+package med.voll.api.domain.paciente;
+
+import java.time.LocalDateTime;
+
+//Linha plana usada na exportação, montada direto na query para não carregar entidades no contexto de persistencia.
+public record DadosExportacaoPaciente(Long id, String nome, String email, String telefone, String cpf,
+                                      String logradouro, String numero, String complemento, String bairro,
+                                      String cidade, String uf, String cep, Boolean ativo,
+                                      LocalDateTime atualizadoEm) {
+}
@@ -1,15 +1,23 @@
 package med.voll.api.domain.paciente;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface PacienteRepository extends JpaRepository<Paciente, Long> {
     Page<Paciente> findAllByAtivoTrue(Pageable paginacao);
 
+    //Resultado no cache de consultas (CacheSegundoNivel), invalidado pelo Hibernate a cada escrita na tabela.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query("""
             select p.ativo 
             from Paciente p 
@@ -17,4 +25,76 @@ public interface PacienteRepository extends JpaRepository<Paciente, Long> {
             p.id = :id
             """)
     Boolean findAtivoById(Long id);
+
+    @Query("""
+            select p.id
+            from Paciente p
+            where
+            p.id in :ids
+            """)
+    List<Long> buscarIdsExistentes(Collection<Long> ids);
+
+    @Query("""
+            select p.id
+            from Paciente p
+            where
+            p.id in :ids
+            and
+            p.ativo = true
+            """)
+    List<Long> buscarIdsAtivos(Collection<Long> ids);
+
+    //Usados na importação para recusar as linhas que violariam as colunas unicas antes do insert em lote.
+    @Query("""
+            select p.cpf
+            from Paciente p
+            where
+            p.cpf in :cpfs
+            """)
+    List<String> buscarCpfsExistentes(Collection<String> cpfs);
+
+    @Query("""
+            select p.email
+            from Paciente p
+            where
+            p.email in :emails
+            """)
+    List<String> buscarEmailsExistentes(Collection<String> emails);
+
+    //Listagem por cursor: a pagina seguinte começa depois do (nome, id) do ultimo registro e não executa count(*).
+    @Query("""
+            select new med.voll.api.domain.paciente.DadosListagemPaciente(p.id, p.nome, p.email, p.cpf)
+            from Paciente p
+            where
+            p.ativo = true
+            order by p.nome, p.id
+            """)
+    List<DadosListagemPaciente> listarAtivosPorNome(Pageable limite);
+
+    @Query("""
+            select new med.voll.api.domain.paciente.DadosListagemPaciente(p.id, p.nome, p.email, p.cpf)
+            from Paciente p
+            where
+            p.ativo = true
+            and
+            (p.nome > :nome or (p.nome = :nome and p.id > :id))
+            order by p.nome, p.id
+            """)
+    List<DadosListagemPaciente> listarAtivosPorNomeApos(String nome, Long id, Pageable limite);
+
+    //Exportação incremental: cursor do banco lido aos poucos (fetch size) e sem entidades gerenciadas.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new med.voll.api.domain.paciente.DadosExportacaoPaciente(p.id, p.nome, p.email, p.telefone, p.cpf,
+                p.endereco.logradouro, p.endereco.numero, p.endereco.complemento, p.endereco.bairro,
+                p.endereco.cidade, p.endereco.uf, p.endereco.cep, p.ativo, p.atualizadoEm)
+            from Paciente p
+            where
+            p.atualizadoEm >= :desde
+            order by p.id
+            """)
+    Stream<DadosExportacaoPaciente> exportarAtualizadosDesde(LocalDateTime desde);
 }
@@ -2,9 +2,11 @@ package med.voll.api.domain.usuario;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 
 /**
@@ -16,7 +18,7 @@ import org.springframework.stereotype.Service;
  *
  * */
 @Service
-public class AutenticacaoService implements UserDetailsService {
+public class AutenticacaoService implements UserDetailsService, UserDetailsPasswordService {
 
     /**
      * É necessario injetar o repository da classe Usuario onde
@@ -33,4 +35,16 @@ public class AutenticacaoService implements UserDetailsService {
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         return repository.findByLogin(username);
     }
+
+    /*
+     * Chamado pelo spring security depois de um login com sucesso quando o hash gravado está desatualizado
+     * (sem o prefixo do algoritmo ou com custo menor que o configurado). A senha já vem com o hash novo.
+     * */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        var usuario = (Usuario) repository.findByLogin(user.getUsername());
+        usuario.atualizarSenha(newPassword);
+        return usuario;
+    }
 }
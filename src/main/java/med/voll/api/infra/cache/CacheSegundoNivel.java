@@ -0,0 +1,94 @@
+package med.voll.api.infra.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/*
+ * Cache de segundo nivel do Hibernate: Medico, Paciente e Usuario carregados em uma sessão ficam disponiveis
+ * para as seguintes, sem nova ida ao banco. O Caffeine é usado pela API JCache, com uma região por entidade e uma
+ * para o cache de consultas (findAtivoById e findByLogin), todas limitadas em tamanho e tempo (api.cache.*).
+ *
+ * O Hibernate invalida as regiões a cada escrita feita por ele, inclusive nas consultas das tabelas alteradas.
+ * Escritas direto pelo JDBC não passam por ele e precisam de um evict no Cache da EntityManagerFactory.
+ * As estatisticas são publicadas no Micrometer com o nome cache.* e a tag cache com o nome da região.
+ * */
+@Component
+public class CacheSegundoNivel implements HibernatePropertiesCustomizer {
+
+    public static final String REGIAO_MEDICOS = "entidade.medicos";
+    public static final String REGIAO_PACIENTES = "entidade.pacientes";
+    public static final String REGIAO_USUARIOS = "entidade.usuarios";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${api.cache.entidades.tamanho:50000}")
+    private long tamanhoEntidades;
+
+    @Value("${api.cache.entidades.expiracao:30m}")
+    private Duration expiracaoEntidades;
+
+    @Value("${api.cache.consultas.tamanho:50000}")
+    private long tamanhoConsultas;
+
+    @Value("${api.cache.consultas.expiracao:10m}")
+    private Duration expiracaoConsultas;
+
+    private CacheManager cacheManager;
+
+    @PostConstruct
+    void inicializar() {
+        //Uma URI por contexto: os testes sobem mais de um contexto na mesma JVM e cada um cria as suas regiões.
+        var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        cacheManager = provider.getCacheManager(URI.create("voll-segundo-nivel-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        criar(REGIAO_MEDICOS, tamanhoEntidades, expiracaoEntidades);
+        criar(REGIAO_PACIENTES, tamanhoEntidades, expiracaoEntidades);
+        criar(REGIAO_USUARIOS, tamanhoEntidades, expiracaoEntidades);
+        criar(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, tamanhoConsultas, expiracaoConsultas);
+
+        //Sem limite: uma entrada removida daqui faria o cache de consultas aceitar resultados antigos.
+        criar(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, null, null);
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    @PreDestroy
+    void encerrar() {
+        cacheManager.close();
+    }
+
+    private void criar(String regiao, Long tamanho, Duration expiracao) {
+        var configuracao = new CaffeineConfiguration<Object, Object>();
+        configuracao.setStatisticsEnabled(true);
+        if (tamanho != null) {
+            configuracao.setMaximumSize(OptionalLong.of(tamanho));
+        }
+        if (expiracao != null) {
+            configuracao.setExpireAfterWrite(OptionalLong.of(expiracao.toNanos()));
+        }
+        JCacheMetrics.monitor(meterRegistry, cacheManager.createCache(regiao, configuracao));
+    }
+
+}
@@ -2,6 +2,8 @@ package med.voll.api.infra.exception;
 
 import jakarta.persistence.EntityNotFoundException;
 import med.voll.api.domain.ValidacaoExcepition;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -13,6 +15,8 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.concurrent.RejectedExecutionException;
+
 
 
 /**
@@ -124,6 +128,24 @@ public class TratadorDeErros {
         return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Acesso negado");
     }
 
+    //Fila do executor de login cheia: o cliente deve tentar de novo em instantes.
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity tratarErroSobrecarga() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body("Servidor ocupado, tente novamente");
+    }
+
+    //Violação de restrição do banco (ex: médico já agendado no horario por uma requisição concorrente).
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity tratarErroConflito() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("Registro em conflito com outro já existente");
+    }
+
+    //Outro agendamento segurou o mesmo horario por mais tempo que a espera configurada.
+    @ExceptionHandler(PessimisticLockingFailureException.class)
+    public ResponseEntity tratarErroTravaOcupada() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body("Horario em uso por outro agendamento, tente novamente");
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity tratarErro500(Exception ex) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Erro: " +ex.getLocalizedMessage());
@@ -0,0 +1,99 @@
+package med.voll.api.infra.exportacao;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.RecordComponent;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/*
+ * Escreve os registros de um record, um por linha, direto na saida da resposta.
+ * No NDJSON cada linha é o json do registro; no CSV a primeira linha traz os nomes dos componentes do record.
+ * Só a linha atual fica em memoria, o buffer é descarregado na saida conforme enche.
+ * */
+class EscritorExportacao<T extends Record> {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final FormatoExportacao formato;
+    private final RecordComponent[] componentes;
+    private final ObjectWriter json;
+
+    EscritorExportacao(Class<T> tipo, FormatoExportacao formato, ObjectWriter json) {
+        this.formato = formato;
+        this.componentes = tipo.getRecordComponents();
+        this.json = json;
+    }
+
+    void escrever(Iterator<T> registros, OutputStream saida) throws IOException {
+        //A saida pertence ao container, então o writer é só descarregado e não fechado.
+        var escritor = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8), TAMANHO_BUFFER);
+        if (formato == FormatoExportacao.CSV) {
+            escreverCabecalho(escritor);
+        }
+
+        while (registros.hasNext()) {
+            var registro = registros.next();
+            if (formato == FormatoExportacao.NDJSON) {
+                escritor.write(json.writeValueAsString(registro));
+            } else {
+                escreverLinhaCsv(escritor, registro);
+            }
+            escritor.write('\n');
+        }
+        escritor.flush();
+    }
+
+    private void escreverCabecalho(BufferedWriter escritor) throws IOException {
+        for (int i = 0; i < componentes.length; i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            escritor.write(componentes[i].getName());
+        }
+        escritor.write('\n');
+    }
+
+    private void escreverLinhaCsv(BufferedWriter escritor, T registro) throws IOException {
+        for (int i = 0; i < componentes.length; i++) {
+            if (i > 0) {
+                escritor.write(',');
+            }
+            var valor = valor(componentes[i], registro);
+            if (valor != null) {
+                escreverCampoCsv(escritor, valor.toString());
+            }
+        }
+    }
+
+    //Campos com separador, aspas ou quebra de linha vão entre aspas, com as aspas internas duplicadas (RFC 4180).
+    private static void escreverCampoCsv(BufferedWriter escritor, String campo) throws IOException {
+        var precisaAspas = false;
+        for (int i = 0; i < campo.length() && !precisaAspas; i++) {
+            var c = campo.charAt(i);
+            precisaAspas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+
+        if (!precisaAspas) {
+            escritor.write(campo);
+            return;
+        }
+
+        escritor.write('"');
+        escritor.write(campo.replace("\"", "\"\""));
+        escritor.write('"');
+    }
+
+    private static Object valor(RecordComponent componente, Object registro) {
+        try {
+            return componente.getAccessor().invoke(registro);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException("Erro ao ler o campo " + componente.getName(), ex);
+        }
+    }
+}
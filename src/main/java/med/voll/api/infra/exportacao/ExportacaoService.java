@@ -0,0 +1,71 @@
+package med.voll.api.infra.exportacao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import med.voll.api.domain.consulta.ConsultaRepository;
+import med.voll.api.domain.consulta.DadosExportacaoConsulta;
+import med.voll.api.domain.medico.DadosExportacaoMedico;
+import med.voll.api.domain.medico.MedicoRepository;
+import med.voll.api.domain.paciente.DadosExportacaoPaciente;
+import med.voll.api.domain.paciente.PacienteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+/*
+ * Exportação de medicos, pacientes e consultas em NDJSON ou CSV.
+ * As consultas devolvem DTOs em um Stream lido com fetch size, então nenhuma entidade entra no contexto de
+ * persistencia e a memoria usada não depende da quantidade de linhas. O filtro "desde" permite exportar só
+ * o que mudou depois da ultima exportação (coluna atualizado_em).
+ * */
+@Service
+public class ExportacaoService {
+
+    //Sem filtro exporta tudo; o banco não aceita LocalDateTime.MIN.
+    private static final LocalDateTime INICIO = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Autowired
+    private MedicoRepository medicoRepository;
+
+    @Autowired
+    private PacienteRepository pacienteRepository;
+
+    @Autowired
+    private ConsultaRepository consultaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void exportarMedicos(LocalDateTime desde, FormatoExportacao formato, OutputStream saida) throws IOException {
+        try (var registros = medicoRepository.exportarAtualizadosDesde(inicio(desde))) {
+            escrever(registros, DadosExportacaoMedico.class, formato, saida);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportarPacientes(LocalDateTime desde, FormatoExportacao formato, OutputStream saida) throws IOException {
+        try (var registros = pacienteRepository.exportarAtualizadosDesde(inicio(desde))) {
+            escrever(registros, DadosExportacaoPaciente.class, formato, saida);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportarConsultas(LocalDateTime desde, FormatoExportacao formato, OutputStream saida) throws IOException {
+        try (var registros = consultaRepository.exportarAtualizadasDesde(inicio(desde))) {
+            escrever(registros, DadosExportacaoConsulta.class, formato, saida);
+        }
+    }
+
+    private <T extends Record> void escrever(Stream<T> registros, Class<T> tipo, FormatoExportacao formato, OutputStream saida) throws IOException {
+        new EscritorExportacao<>(tipo, formato, objectMapper.writer()).escrever(registros.iterator(), saida);
+    }
+
+    private static LocalDateTime inicio(LocalDateTime desde) {
+        return desde != null ? desde : INICIO;
+    }
+}
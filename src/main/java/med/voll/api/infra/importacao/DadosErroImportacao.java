@@ -0,0 +1,5 @@
+package med.voll.api.infra.importacao;
+
+//Linha recusada na importação, pelo numero da linha na entrada (a primeira linha é 1, inclusive o cabeçalho do CSV).
+public record DadosErroImportacao(int linha, String erro) {
+}
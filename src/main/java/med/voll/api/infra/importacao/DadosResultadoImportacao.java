@@ -0,0 +1,6 @@
+package med.voll.api.infra.importacao;
+
+import java.util.List;
+
+public record DadosResultadoImportacao(int linhas, int importadas, List<DadosErroImportacao> erros) {
+}
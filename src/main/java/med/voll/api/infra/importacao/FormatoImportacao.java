@@ -0,0 +1,31 @@
+package med.voll.api.infra.importacao;
+
+import med.voll.api.domain.ValidacaoExcepition;
+import org.springframework.http.MediaType;
+
+public enum FormatoImportacao {
+
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String contentType;
+
+    FormatoImportacao(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    //Formato pelo Content-Type da requisição, sem considerar parametros como o charset.
+    public static FormatoImportacao doContentType(String contentType) {
+        var tipo = MediaType.parseMediaType(contentType);
+        for (var formato : values()) {
+            if (tipo.isCompatibleWith(MediaType.parseMediaType(formato.contentType))) {
+                return formato;
+            }
+        }
+        throw new ValidacaoExcepition("Formato de importação não suportado: " + contentType);
+    }
+}
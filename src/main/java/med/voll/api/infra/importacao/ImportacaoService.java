@@ -0,0 +1,157 @@
+package med.voll.api.infra.importacao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.Validator;
+import med.voll.api.domain.medico.CadastroDeMedicos;
+import med.voll.api.domain.medico.DadosCadastroMedico;
+import med.voll.api.domain.paciente.CadastroDePacientes;
+import med.voll.api.domain.paciente.DadosCadastroPaciente;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * Importação de medicos e pacientes em CSV ou NDJSON, para a carga inicial de uma rede de clinicas.
+ *
+ * A entrada é lida em blocos de api.importacao.bloco linhas. Cada linha passa pelo Bean Validation e as validas vão
+ * para o cadastro em lote (CadastroDeMedicos e CadastroDePacientes), com uma transação e um batch do JDBC por bloco.
+ * Um bloco recusado pelo banco (ex: um crm gravado por outra requisição depois da conferencia) é refeito linha a linha,
+ * para que só as linhas em conflito fiquem de fora. Os blocos já gravados não são desfeitos se um bloco seguinte falhar.
+ *
+ * A resposta traz o erro de cada linha recusada. As linhas vão para o contador importacao.linhas (tags tipo e resultado)
+ * e a duração de cada importação para o timer importacao; a vazão em linhas por segundo também sai no log.
+ * */
+@Service
+public class ImportacaoService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportacaoService.class);
+
+    @Autowired
+    private CadastroDeMedicos cadastroDeMedicos;
+
+    @Autowired
+    private CadastroDePacientes cadastroDePacientes;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${api.importacao.bloco:1000}")
+    private int tamanhoBloco;
+
+    public DadosResultadoImportacao importarMedicos(FormatoImportacao formato, Reader entrada) throws IOException {
+        return importar("medicos", DadosCadastroMedico.class, formato, entrada, cadastroDeMedicos::cadastrarLote);
+    }
+
+    public DadosResultadoImportacao importarPacientes(FormatoImportacao formato, Reader entrada) throws IOException {
+        return importar("pacientes", DadosCadastroPaciente.class, formato, entrada, cadastroDePacientes::cadastrarLote);
+    }
+
+    private <T extends Record> DadosResultadoImportacao importar(String tipo, Class<T> classe, FormatoImportacao formato, Reader entrada,
+                                                                 Function<List<T>, List<String>> cadastro) throws IOException {
+        var inicio = System.nanoTime();
+        var leitor = new LeitorImportacao<>(classe, formato, objectMapper, entrada);
+        var erros = new ArrayList<DadosErroImportacao>();
+        var linhas = 0;
+        var importadas = 0;
+
+        List<LeitorImportacao.Linha<T>> bloco;
+        while (!(bloco = leitor.ler(tamanhoBloco)).isEmpty()) {
+            linhas += bloco.size();
+            var validas = new ArrayList<LeitorImportacao.Linha<T>>(bloco.size());
+            for (var linha : bloco) {
+                var erro = linha.erro() != null ? linha.erro() : validar(linha.dados());
+                if (erro == null) {
+                    validas.add(linha);
+                } else {
+                    erros.add(new DadosErroImportacao(linha.numero(), erro));
+                }
+            }
+            importadas += cadastrar(validas, cadastro, erros);
+        }
+        erros.sort(Comparator.comparingInt(DadosErroImportacao::linha));
+
+        var duracao = System.nanoTime() - inicio;
+        registrarMetricas(tipo, importadas, linhas - importadas, duracao);
+        LOGGER.info("Importação de {}: {} linhas, {} importadas em {} ms ({} linhas/s)", tipo, linhas, importadas,
+                TimeUnit.NANOSECONDS.toMillis(duracao), Math.round(linhas / (duracao / 1e9)));
+        return new DadosResultadoImportacao(linhas, importadas, erros);
+    }
+
+    private <T> String validar(T dados) {
+        var violacoes = validator.validate(dados);
+        if (violacoes.isEmpty()) {
+            return null;
+        }
+        return violacoes.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private <T> int cadastrar(List<LeitorImportacao.Linha<T>> linhas, Function<List<T>, List<String>> cadastro,
+                              List<DadosErroImportacao> erros) {
+        if (linhas.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return registrarResultado(linhas, cadastro.apply(linhas.stream().map(LeitorImportacao.Linha::dados).toList()), erros);
+        } catch (DataIntegrityViolationException ex) {
+            var importadas = 0;
+            for (var linha : linhas) {
+                try {
+                    importadas += registrarResultado(List.of(linha), cadastro.apply(List.of(linha.dados())), erros);
+                } catch (DataIntegrityViolationException exLinha) {
+                    erros.add(new DadosErroImportacao(linha.numero(), "Registro recusado pelo banco: "
+                            + exLinha.getMostSpecificCause().getMessage()));
+                }
+            }
+            return importadas;
+        }
+    }
+
+    //O cadastro em lote devolve o erro de cada linha na mesma posição, null para as cadastradas.
+    private static <T> int registrarResultado(List<LeitorImportacao.Linha<T>> linhas, List<String> resultado,
+                                              List<DadosErroImportacao> erros) {
+        var importadas = 0;
+        for (int i = 0; i < linhas.size(); i++) {
+            if (resultado.get(i) == null) {
+                importadas++;
+            } else {
+                erros.add(new DadosErroImportacao(linhas.get(i).numero(), resultado.get(i)));
+            }
+        }
+        return importadas;
+    }
+
+    private void registrarMetricas(String tipo, int importadas, int recusadas, long duracao) {
+        meterRegistry.counter("importacao.linhas", "tipo", tipo, "resultado", "importada").increment(importadas);
+        meterRegistry.counter("importacao.linhas", "tipo", tipo, "resultado", "recusada").increment(recusadas);
+        Timer.builder("importacao")
+                .description("Duração de cada importação de cadastros")
+                .tag("tipo", tipo)
+                .register(meterRegistry)
+                .record(duracao, TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,199 @@
+package med.voll.api.infra.importacao;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Lê a entrada de uma importação aos poucos e devolve blocos de linhas já convertidas para o record.
+ *
+ * No NDJSON cada linha é o json do registro. No CSV a primeira linha traz os nomes das colunas: os componentes do record
+ * e os de um record interno (o endereco) pelo proprio nome, como na exportação, ou com o prefixo (endereco.cep).
+ * Colunas desconhecidas, como o id e o ativo de um arquivo exportado, são ignoradas.
+ *
+ * Uma linha que não pode ser convertida volta com a mensagem de erro, sem interromper a leitura das seguintes.
+ * */
+class LeitorImportacao<T extends Record> {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final Class<T> tipo;
+    private final FormatoImportacao formato;
+    private final ObjectMapper objectMapper;
+    private final BufferedReader entrada;
+
+    //Ultima linha lida da entrada; a primeira é 1.
+    private int numeroLinha;
+
+    //Caminho de cada coluna do CSV no json do record, ex: {"endereco", "cep"}.
+    private String[][] colunas;
+
+    LeitorImportacao(Class<T> tipo, FormatoImportacao formato, ObjectMapper objectMapper, Reader entrada) {
+        this.tipo = tipo;
+        this.formato = formato;
+        this.objectMapper = objectMapper;
+        this.entrada = new BufferedReader(entrada, TAMANHO_BUFFER);
+    }
+
+    //Até "quantidade" linhas; uma lista vazia indica o fim da entrada.
+    List<Linha<T>> ler(int quantidade) throws IOException {
+        var linhas = new ArrayList<Linha<T>>(quantidade);
+        while (linhas.size() < quantidade) {
+            var linha = formato == FormatoImportacao.CSV ? lerCsv() : lerNdjson();
+            if (linha == null) {
+                break;
+            }
+            linhas.add(linha);
+        }
+        return linhas;
+    }
+
+    private Linha<T> lerNdjson() throws IOException {
+        String conteudo;
+        do {
+            conteudo = entrada.readLine();
+            if (conteudo == null) {
+                return null;
+            }
+            numeroLinha++;
+        } while (conteudo.isBlank());
+
+        try {
+            return new Linha<>(numeroLinha, objectMapper.readValue(conteudo, tipo), null);
+        } catch (JsonProcessingException ex) {
+            return new Linha<>(numeroLinha, null, erro(ex));
+        }
+    }
+
+    private Linha<T> lerCsv() throws IOException {
+        if (colunas == null && !lerCabecalho()) {
+            return null;
+        }
+
+        int numero;
+        List<String> campos;
+        do {
+            numero = numeroLinha + 1;
+            campos = lerRegistroCsv();
+            if (campos == null) {
+                return null;
+            }
+        } while (campos.size() == 1 && campos.get(0).isBlank());
+
+        try {
+            return new Linha<>(numero, objectMapper.treeToValue(montarJson(campos), tipo), null);
+        } catch (JsonProcessingException | IllegalArgumentException ex) {
+            return new Linha<>(numero, null, erro(ex));
+        }
+    }
+
+    private boolean lerCabecalho() throws IOException {
+        var cabecalho = lerRegistroCsv();
+        if (cabecalho == null) {
+            return false;
+        }
+
+        colunas = new String[cabecalho.size()][];
+        for (int i = 0; i < colunas.length; i++) {
+            //O BOM que alguns editores gravam no inicio do arquivo não faz parte do nome da primeira coluna.
+            colunas[i] = caminho(cabecalho.get(i).replace("\uFEFF", "").strip());
+        }
+        return true;
+    }
+
+    private String[] caminho(String coluna) {
+        if (coluna.contains(".")) {
+            return coluna.split("\\.", 2);
+        }
+
+        for (var componente : tipo.getRecordComponents()) {
+            if (componente.getName().equals(coluna)) {
+                return new String[]{coluna};
+            }
+        }
+        for (var componente : tipo.getRecordComponents()) {
+            if (componente.getType().isRecord()) {
+                for (var interno : componente.getType().getRecordComponents()) {
+                    if (interno.getName().equals(coluna)) {
+                        return new String[]{componente.getName(), coluna};
+                    }
+                }
+            }
+        }
+        return new String[]{coluna};
+    }
+
+    //Campos vazios ficam de fora do json e chegam nulos ao record.
+    private ObjectNode montarJson(List<String> campos) {
+        var json = objectMapper.createObjectNode();
+        for (int i = 0; i < colunas.length && i < campos.size(); i++) {
+            var valor = campos.get(i);
+            if (valor.isEmpty()) {
+                continue;
+            }
+
+            var caminho = colunas[i];
+            var destino = json;
+            for (int j = 0; j < caminho.length - 1; j++) {
+                destino = destino.get(caminho[j]) instanceof ObjectNode interno ? interno : destino.putObject(caminho[j]);
+            }
+            destino.put(caminho[caminho.length - 1], valor);
+        }
+        return json;
+    }
+
+    //Campos entre aspas podem ter separador, aspas duplicadas e quebras de linha (RFC 4180).
+    private List<String> lerRegistroCsv() throws IOException {
+        var c = entrada.read();
+        if (c == -1) {
+            return null;
+        }
+        numeroLinha++;
+
+        var campos = new ArrayList<String>();
+        var campo = new StringBuilder();
+        var entreAspas = false;
+        while (c != -1) {
+            if (entreAspas) {
+                if (c == '"') {
+                    c = entrada.read();
+                    if (c != '"') {
+                        //Fim das aspas: o caractere seguinte é tratado fora delas.
+                        entreAspas = false;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    numeroLinha++;
+                }
+                campo.append((char) c);
+            } else if (c == '"' && campo.isEmpty()) {
+                entreAspas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                campo.append((char) c);
+            }
+            c = entrada.read();
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    private static String erro(Exception ex) {
+        var mensagem = ex instanceof JsonProcessingException json ? json.getOriginalMessage() : ex.getMessage();
+        return "Linha inválida: " + mensagem;
+    }
+
+    record Linha<T>(int numero, T dados, String erro) {
+    }
+
+}
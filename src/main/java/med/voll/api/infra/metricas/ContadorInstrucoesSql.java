@@ -0,0 +1,60 @@
+package med.voll.api.infra.metricas;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Conta as instruções SQL preparadas pelo Hibernate na thread atual, zeradas a cada requisição pelo
+ * FiltroInstrucoesSql, e substitui o spring.jpa.show-sql: com este logger em debug só uma fração
+ * (api.metricas.sql.amostragem) das instruções vai para o log, sem formatação e sem escrever no stdout.
+ *
+ * Só o SQL do Hibernate passa por aqui, então o http.server.requests.sql não conta o que vai pelo JdbcTemplate:
+ * o RegistroAtivos (carga e pg_notify), o cadastrarLote dos cadastros de médicos e pacientes e a manutenção das
+ * partições do ArquivamentoConsultas. Também ficam de fora as consultas feitas em outras threads, como a do
+ * ExecutorLogin no /login.
+ * */
+@Component
+public class ContadorInstrucoesSql implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContadorInstrucoesSql.class);
+
+    private static final ThreadLocal<Contagem> CONTAGEM = ThreadLocal.withInitial(Contagem::new);
+
+    @Value("${api.metricas.sql.amostragem:0.01}")
+    private double amostragem;
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    @Override
+    public String inspect(String sql) {
+        CONTAGEM.get().total++;
+        if (LOGGER.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < amostragem) {
+            LOGGER.debug(sql);
+        }
+        return sql;
+    }
+
+    public void zerar() {
+        CONTAGEM.get().total = 0;
+    }
+
+    public int total() {
+        return CONTAGEM.get().total;
+    }
+
+    private static class Contagem {
+        private int total;
+    }
+
+}
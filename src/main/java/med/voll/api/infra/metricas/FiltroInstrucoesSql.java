@@ -0,0 +1,55 @@
+package med.voll.api.infra.metricas;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/*
+ * Publica quantas instruções SQL do Hibernate cada requisição executou (http.server.requests.sql), com as mesmas tags
+ * method e uri do http.server.requests. Roda antes do filtro do Spring Security para contar também a busca do usuario.
+ * */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class FiltroInstrucoesSql extends OncePerRequestFilter {
+
+    @Autowired
+    private ContadorInstrucoesSql contador;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        contador.zerar();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            DistributionSummary.builder("http.server.requests.sql")
+                    .description("Instruções SQL executadas por requisição")
+                    .baseUnit("instrucoes")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri(request))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(contador.total());
+        }
+    }
+
+    //O padrão da rota (ex: /consultas/medicos/{id}) mantem a quantidade de series pequena.
+    private static String uri(HttpServletRequest request) {
+        var padrao = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return padrao != null ? padrao.toString() : "UNKNOWN";
+    }
+
+}
@@ -0,0 +1,64 @@
+package med.voll.api.infra.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import med.voll.api.domain.ExecucaoAposCommit;
+import med.voll.api.domain.usuario.UsuarioRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+ * Cache dos usuarios autenticados, indexado pelo subject do token JWT (login).
+ * Evita uma consulta na tabela usuarios a cada requisição autenticada no SecurityFilter.
+ * As entradas expiram depois do tempo configurado e são removidas quando o usuario é alterado ou excluido.
+ * As estatisticas (acertos, faltas, tamanho) são publicadas no Micrometer com o nome cache.* e a tag cache=principais.
+ * */
+@Component
+public class CachePrincipais {
+
+    @Autowired
+    private UsuarioRepository repository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${api.security.cache-principais.tamanho-maximo:10000}")
+    private long tamanhoMaximo;
+
+    @Value("${api.security.cache-principais.expiracao:5m}")
+    private Duration expiracao;
+
+    private Cache<String, UserDetails> cache;
+
+    @PostConstruct
+    void inicializar() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximo)
+                .expireAfterWrite(expiracao)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "principais");
+    }
+
+    //Retorna null quando o login não existe; nesse caso nada é guardado no cache.
+    public UserDetails buscar(String login) {
+        return cache.get(login, repository::findByLogin);
+    }
+
+    //A remoção acontece depois do commit para que uma requisição concorrente não recarregue o valor antigo.
+    public void invalidar(String login) {
+        ExecucaoAposCommit.executar(() -> cache.invalidate(login));
+    }
+
+    public void invalidarTodos() {
+        cache.invalidateAll();
+    }
+
+}
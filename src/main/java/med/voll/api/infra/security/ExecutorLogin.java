@@ -0,0 +1,49 @@
+package med.voll.api.infra.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+ * Pool exclusivo para o /login. O hash de senha é caro em CPU, então ele roda em poucas threads com uma fila
+ * limitada; quando a fila enche o login é recusado com 503 (RejectedExecutionException, ver TratadorDeErros)
+ * em vez de ocupar as threads do Tomcat que atendem o restante da API.
+ * */
+@Component
+public class ExecutorLogin {
+
+    @Value("${api.security.login.threads:2}")
+    private int threads;
+
+    @Value("${api.security.login.fila:100}")
+    private int fila;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void inicializar() {
+        var contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fila),
+                tarefa -> new Thread(tarefa, "login-" + contador.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <T> CompletableFuture<T> executar(Supplier<T> tarefa) {
+        return CompletableFuture.supplyAsync(tarefa, executor);
+    }
+
+    @PreDestroy
+    void encerrar() {
+        executor.shutdown();
+    }
+
+}
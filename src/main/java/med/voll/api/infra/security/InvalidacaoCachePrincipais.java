@@ -0,0 +1,25 @@
+package med.voll.api.infra.security;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import med.voll.api.domain.usuario.Usuario;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Entity listener do Usuario: qualquer alteração ou exclusão remove o usuario do CachePrincipais.
+ * O Hibernate obtem o listener pelo container do Spring, por isso o @Autowired funciona aqui.
+ * */
+@Component
+public class InvalidacaoCachePrincipais {
+
+    @Autowired
+    private CachePrincipais cachePrincipais;
+
+    @PostUpdate
+    @PostRemove
+    public void invalidar(Usuario usuario) {
+        cachePrincipais.invalidar(usuario.getLogin());
+    }
+
+}
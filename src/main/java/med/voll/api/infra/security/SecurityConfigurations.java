@@ -1,6 +1,7 @@
 package med.voll.api.infra.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -11,10 +12,14 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.Map;
+
 
 /*
 * Como se trata de uma classe de configuração colocamos a anotation @Configuration.
@@ -28,6 +33,14 @@ public class SecurityConfigurations {
     @Autowired
     private SecurityFilter securityFilter;
 
+    //Algoritmo usado para gerar os novos hashes de senha (bcrypt ou pbkdf2).
+    @Value("${api.security.senha.algoritmo:bcrypt}")
+    private String algoritmoSenha;
+
+    //Fator de trabalho do bcrypt: cada unidade a mais dobra o custo de cada login.
+    @Value("${api.security.senha.bcrypt.custo:10}")
+    private int custoBcrypt;
+
     //Metodo de configuração de autenticação e autorização.
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -38,6 +51,7 @@ public class SecurityConfigurations {
                 .and().authorizeRequests()
                 //Libera uma url da api sem precisar estar autenticado.
                 .antMatchers(HttpMethod.POST, "/login").permitAll()
+                .antMatchers(HttpMethod.GET, "/actuator/prometheus").permitAll()
                  // Metodo para liberar acesso a metodo com perfil de admin
                  //.antMatchers(HttpMethod.DELETE, "/medicos").hasRole("ADMIN")
                 //.antMatchers(HttpMethod.DELETE, "/pacientes").hasRole("ADMIN")
@@ -52,9 +66,21 @@ public class SecurityConfigurations {
         return configuration.getAuthenticationManager();
     }
 
+    /*
+     * Os hashes novos recebem o prefixo do algoritmo ({bcrypt}, {pbkdf2}). Os hashes antigos, gravados sem prefixo,
+     * continuam sendo conferidos com bcrypt e são regravados no formato atual no proximo login com sucesso
+     * (ver AutenticacaoService.updatePassword).
+     * */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        var bcrypt = new BCryptPasswordEncoder(custoBcrypt);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", bcrypt,
+                "pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+
+        var encoder = new DelegatingPasswordEncoder(algoritmoSenha, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
     }
 
 
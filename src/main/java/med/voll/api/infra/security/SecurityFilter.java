@@ -1,10 +1,12 @@
 package med.voll.api.infra.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import med.voll.api.domain.usuario.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,6 +14,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class SecurityFilter extends OncePerRequestFilter {
@@ -20,10 +23,26 @@ public class SecurityFilter extends OncePerRequestFilter {
     private TokenService tokenService;
 
     @Autowired
-    private UsuarioRepository repository;
+    private CachePrincipais cachePrincipais;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Tempo gasto no filtro antes de seguir para o controller, separado pelas requisições com e sem token.
+    private Timer comToken;
+
+    private Timer semToken;
+
+    @PostConstruct
+    void inicializar() {
+        comToken = timerFiltro("sim");
+        semToken = timerFiltro("nao");
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        var inicio = System.nanoTime();
+
         //Recupera o token da sessão.
         var tokenJWT = recuperarToken(request);
 
@@ -33,18 +52,28 @@ public class SecurityFilter extends OncePerRequestFilter {
             //Recupera o token
             var subject = tokenService.getSubject(tokenJWT);
 
-            //Recupera o usuario do banco de dados.
-            var usuario = repository.findByLogin(subject);
+            //Recupera o usuario do cache, que só vai ao banco de dados na primeira requisição do login.
+            var usuario = cachePrincipais.buscar(subject);
 
-            var authentication = new UsernamePasswordAuthenticationToken(usuario, null, usuario.getAuthorities());
+            if (usuario != null) {
+                var authentication = new UsernamePasswordAuthenticationToken(usuario, null, usuario.getAuthorities());
 
-            //Classe responsavel e autentica o usuario
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+                //Classe responsavel e autentica o usuario
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
         }
 
+        (tokenJWT != null ? comToken : semToken).record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
         filterChain.doFilter(request, response);
     }
 
+    private Timer timerFiltro(String token) {
+        return Timer.builder("seguranca.filtro")
+                .description("Tempo de autenticação do SecurityFilter, sem o restante da requisição")
+                .tag("token", token)
+                .register(meterRegistry);
+    }
+
     private String recuperarToken(HttpServletRequest request) {
         var authorizationHeader = request.getHeader("Authorization");
         if (authorizationHeader != null) {
@@ -1,51 +1,142 @@
 package med.voll.api.infra.security;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import med.voll.api.domain.usuario.Usuario;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class TokenService {
 
+    private static final String ISSUER = "API Voll.med";
+
     @Value("${api.security.token.secret}")
     private String secret;
 
+    @Value("${api.security.token.cache.tamanho-maximo:10000}")
+    private long tamanhoMaximoCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Algorithm e JWTVerifier são imutaveis e thread-safe, então são criados uma unica vez.
+    private Algorithm algoritmo;
+
+    private JWTVerifier verificador;
+
+    //Tokens já verificados: a mesma requisição repetida com o mesmo token não refaz o HMAC nem o parse do json.
+    private Cache<String, TokenVerificado> tokensVerificados;
+
+    //Tempo da assinatura e da verificação do HMAC; os acertos do cache aparecem em cache.gets com a tag cache=tokens.
+    private Timer geracao;
+
+    private Timer verificacaoValida;
+
+    private Timer verificacaoInvalida;
+
+    @PostConstruct
+    void inicializar() {
+        algoritmo = Algorithm.HMAC256(secret);
+        verificador = JWT.require(algoritmo)
+                .withIssuer(ISSUER)
+                .build();
+        tokensVerificados = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximoCache)
+                .expireAfter(new ExpiracaoDoToken())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tokensVerificados, "tokens");
+
+        geracao = timerToken("gerar", "sucesso");
+        verificacaoValida = timerToken("verificar", "sucesso");
+        verificacaoInvalida = timerToken("verificar", "invalido");
+    }
+
     public String gerarToken(Usuario usuario) {
+        var inicio = System.nanoTime();
         try {
-            var algoritmo = Algorithm.HMAC256(secret);
             return JWT.create()
-                    .withIssuer("API Voll.med")
+                    .withIssuer(ISSUER)
                     .withSubject(usuario.getLogin())
                     .withExpiresAt(dataExpiracao())
                     .sign(algoritmo);
         } catch (JWTCreationException exception){
             throw new RuntimeException("erro ao gerar token jwt", exception);
+        } finally {
+            geracao.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
         }
     }
 
     public String getSubject(String tokenJWT) {
+        var verificado = tokensVerificados.getIfPresent(tokenJWT);
+        if (verificado != null && verificado.expiracao().isAfter(Instant.now())) {
+            return verificado.subject();
+        }
+
+        var inicio = System.nanoTime();
         try {
-            var algoritmo = Algorithm.HMAC256(secret);
-            return JWT.require(algoritmo)
-                    .withIssuer("API Voll.med")
-                    .build()
-                    .verify(tokenJWT)
-                    .getSubject();
+            var decodificado = verificador.verify(tokenJWT);
+            verificacaoValida.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            if (decodificado.getExpiresAtAsInstant() != null) {
+                tokensVerificados.put(tokenJWT, new TokenVerificado(decodificado.getSubject(), decodificado.getExpiresAtAsInstant()));
+            }
+            return decodificado.getSubject();
         } catch (JWTVerificationException exception) {
+            verificacaoInvalida.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
             throw new RuntimeException("Token JWT inválido ou expirado!");
         }
     }
 
+    private Timer timerToken(String operacao, String resultado) {
+        return Timer.builder("seguranca.token")
+                .description("Tempo para assinar ou verificar um token JWT")
+                .tag("operacao", operacao)
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+
     private Instant dataExpiracao() {
         return LocalDateTime.now().plusHours(2).toInstant(ZoneOffset.of("-03:00"));
     }
 
+    private record TokenVerificado(String subject, Instant expiracao) {
+    }
+
+    //Cada token sai do cache no instante em que expira.
+    private static class ExpiracaoDoToken implements Expiry<String, TokenVerificado> {
+
+        @Override
+        public long expireAfterCreate(String token, TokenVerificado verificado, long agora) {
+            return Math.max(0, Duration.between(Instant.now(), verificado.expiracao()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, TokenVerificado verificado, long agora, long duracaoAtual) {
+            return expireAfterCreate(token, verificado, agora);
+        }
+
+        @Override
+        public long expireAfterRead(String token, TokenVerificado verificado, long agora, long duracaoAtual) {
+            return duracaoAtual;
+        }
+    }
+
 }
@@ -0,0 +1,72 @@
+package med.voll.api.infra.threads;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/*
+ * Diagnostico de threads virtuais presas à thread de plataforma (pinning), que acontece quando uma thread
+ * virtual bloqueia dentro de um bloco synchronized ou de codigo nativo e deixa de liberar o carrier.
+ * Escuta o evento jdk.VirtualThreadPinned do JFR, registra a pilha no log e conta em threads.virtuais.fixadas.
+ * Para a saida da propria JVM use também -Djdk.tracePinnedThreads=short (já configurado no perfil do pom.xml).
+ * */
+@Component
+@Profile("threads-virtuais")
+public class MonitorThreadsFixadas {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitorThreadsFixadas.class);
+    private static final String EVENTO = "jdk.VirtualThreadPinned";
+    private static final int QUADROS_NO_LOG = 8;
+
+    @Value("${api.threads.virtuais.limite-fixacao:20ms}")
+    private Duration limite;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private RecordingStream gravacao;
+
+    @PostConstruct
+    void iniciar() {
+        var fixadas = Counter.builder("threads.virtuais.fixadas")
+                .description("Threads virtuais que ficaram presas ao carrier acima do limite")
+                .register(meterRegistry);
+
+        gravacao = new RecordingStream();
+        gravacao.enable(EVENTO).withThreshold(limite).withStackTrace();
+        gravacao.onEvent(EVENTO, evento -> {
+            fixadas.increment();
+            LOGGER.warn("Thread virtual fixada por {} ms:\n{}", evento.getDuration().toMillis(), pilha(evento));
+        });
+        gravacao.startAsync();
+    }
+
+    @PreDestroy
+    void encerrar() {
+        gravacao.close();
+    }
+
+    private static String pilha(RecordedEvent evento) {
+        if (evento.getStackTrace() == null) {
+            return "(sem pilha)";
+        }
+        return evento.getStackTrace().getFrames().stream()
+                .limit(QUADROS_NO_LOG)
+                .map(quadro -> "\tat " + quadro.getMethod().getType().getName() + "." + quadro.getMethod().getName()
+                        + ":" + quadro.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+
+}
@@ -0,0 +1,48 @@
+package med.voll.api.infra.threads;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Modo opcional com threads virtuais, ativado pelo perfil "threads-virtuais" (ver application-threads-virtuais.properties
+ * e o perfil threads-virtuais do pom.xml, que exige o Java 21).
+ *
+ * Cada requisição do Tomcat, e portanto toda a cadeia de validadores da AgendaDeConsultas e as chamadas ao JPA,
+ * roda em uma thread virtual; as exportações (StreamingResponseBody) usam o mesmo tipo de executor.
+ * O login continua no ExecutorLogin com threads de plataforma, o hash da senha é CPU e não se beneficia delas.
+ *
+ * O executor é obtido por reflexão para que o codigo continue compilando com o Java 17 do build padrão.
+ * */
+@Configuration
+@Profile("threads-virtuais")
+public class ThreadsVirtuaisConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> tomcatComThreadsVirtuais() {
+        return protocolHandler -> protocolHandler.setExecutor(novoExecutorVirtual());
+    }
+
+    @Bean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(novoExecutorVirtual());
+    }
+
+    private static ExecutorService novoExecutorVirtual() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("O perfil threads-virtuais precisa do Java 21 ou superior", ex);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Erro ao criar o executor de threads virtuais", ex);
+        }
+    }
+
+}
@@ -0,0 +1 @@
+create index ix_consultas_data_id on consultas(data, id);
@@ -0,0 +1,6 @@
+-- Id da reserva que originou a consulta (agendamento com gravação posterior, ReservasAgenda).
+-- Na recuperação do journal ele diz quais reservas já chegaram ao banco antes da queda.
+alter table consultas add reserva varchar(36);
+
+-- A data entra no indice porque no PostgreSQL a tabela é particionada por data (V12).
+create unique index uk_consultas_reserva on consultas(reserva, data);
@@ -0,0 +1,4 @@
+-- O cancelamento marca a consulta em vez de excluir a linha: a exportação incremental (atualizado_em) e o historico
+-- do paciente continuam enxergando a consulta cancelada. As restrições unicas deixam de contar as canceladas na
+-- migration V15.1 de cada banco.
+alter table consultas add column cancelada boolean not null default false;
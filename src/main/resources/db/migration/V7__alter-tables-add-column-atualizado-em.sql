@@ -0,0 +1,7 @@
+alter table medicos add atualizado_em timestamp not null default current_timestamp;
+alter table pacientes add atualizado_em timestamp not null default current_timestamp;
+alter table consultas add atualizado_em timestamp not null default current_timestamp;
+
+create index ix_medicos_atualizado_em on medicos(atualizado_em);
+create index ix_pacientes_atualizado_em on pacientes(atualizado_em);
+create index ix_consultas_atualizado_em on consultas(atualizado_em);
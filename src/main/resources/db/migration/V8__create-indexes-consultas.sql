@@ -0,0 +1,3 @@
+alter table consultas add constraint uk_consultas_medico_id_data unique(medico_id, data);
+
+create index ix_consultas_paciente_id_data on consultas(paciente_id, data);
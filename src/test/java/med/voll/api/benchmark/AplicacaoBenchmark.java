@@ -0,0 +1,29 @@
+package med.voll.api.benchmark;
+
+import med.voll.api.ApiApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/*
+ * Sobe a aplicação completa sobre um H2 em memoria (modo PostgreSQL) com as migrations do Flyway,
+ * para que os benchmarks meçam o mesmo codigo que roda em produção.
+ * */
+public final class AplicacaoBenchmark {
+
+    private AplicacaoBenchmark() {
+    }
+
+    public static ConfigurableApplicationContext iniciar(String nomeBanco, String... propriedades) {
+        return new SpringApplicationBuilder(ApiApplication.class)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:" + nomeBanco + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+                        "spring.datasource.driver-class-name=org.h2.Driver",
+                        "spring.datasource.username=sa",
+                        "spring.datasource.password=",
+                        "spring.jpa.show-sql=false",
+                        "server.port=0")
+                .properties(propriedades)
+                .run();
+    }
+
+}
@@ -0,0 +1,111 @@
+package med.voll.api.benchmark;
+
+import med.voll.api.domain.consulta.ConsultaRepository;
+import med.voll.api.domain.medico.DadosListagemMedico;
+import med.voll.api.domain.medico.Especialidade;
+import med.voll.api.domain.medico.MedicoRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Latencia das consultas do agendamento sobre uma base gerada com 1 milhão de consultas,
+ * com e sem os indices das migrations V8 e V9. O plano de cada consulta é impresso no setup.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsultasIndexadasBenchmark {
+
+    private static final int MEDICOS = 2000;
+    private static final int PACIENTES = 200000;
+    private static final LocalDateTime INICIO = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    @Param({"1000000"})
+    private int consultas;
+
+    @Param({"true", "false"})
+    private boolean comIndices;
+
+    private ConfigurableApplicationContext contexto;
+    private ConsultaRepository consultaRepository;
+    private MedicoRepository medicoRepository;
+    private int horas;
+
+    @Setup
+    public void iniciar() {
+        contexto = AplicacaoBenchmark.iniciar("consultas_indexadas_" + comIndices);
+        consultaRepository = contexto.getBean(ConsultaRepository.class);
+        medicoRepository = contexto.getBean(MedicoRepository.class);
+        horas = consultas / MEDICOS;
+
+        var jdbc = contexto.getBean(JdbcTemplate.class);
+        if (!comIndices) {
+            jdbc.execute("alter table consultas drop constraint uk_consultas_medico_id_data");
+            jdbc.execute("drop index ix_consultas_paciente_id_data");
+            jdbc.execute("drop index ix_medicos_especialidade_ativos");
+            jdbc.execute("drop index ix_medicos_nome_ativos");
+            jdbc.execute("drop index ix_pacientes_nome_ativos");
+        }
+
+        GeradorDeDados.gerarMedicos(jdbc, MEDICOS);
+        GeradorDeDados.gerarPacientes(jdbc, PACIENTES);
+        GeradorDeDados.gerarConsultas(jdbc, consultas, MEDICOS, PACIENTES, INICIO);
+        jdbc.execute("analyze");
+
+        imprimirPlano(jdbc, "select count(*) from consultas where medico_id = 10 and data = timestamp '2030-01-02 10:00:00'");
+        imprimirPlano(jdbc, "select count(*) from consultas where paciente_id = 10 and data between timestamp '2030-01-02 07:00:00' and timestamp '2030-01-02 18:00:00'");
+        imprimirPlano(jdbc, """
+                select m.id from medicos m where m.ativo = true and m.especialidade = 'CARDIOLOGIA'
+                and not exists(select c.id from consultas c where c.medico_id = m.id and c.data = timestamp '2030-01-02 10:00:00')
+                """);
+        imprimirPlano(jdbc, "select m.id, m.nome from medicos m where m.ativo = true order by m.nome, m.id limit 10");
+    }
+
+    @TearDown
+    public void encerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public boolean medicoOcupadoNoHorario() {
+        var aleatorio = ThreadLocalRandom.current();
+        return consultaRepository.existsByMedicoIdAndDataAndCanceladaFalse((long) aleatorio.nextInt(1, MEDICOS + 1), horario(aleatorio.nextInt(horas)));
+    }
+
+    @Benchmark
+    public boolean pacienteComConsultaNoDia() {
+        var aleatorio = ThreadLocalRandom.current();
+        var dia = horario(aleatorio.nextInt(horas)).toLocalDate();
+        return consultaRepository.existsByPacienteIdAndDataBetweenAndCanceladaFalse((long) aleatorio.nextInt(1, PACIENTES + 1),
+                dia.atTime(7, 0), dia.atTime(18, 0));
+    }
+
+    @Benchmark
+    public List<Long> medicosLivresNaEspecialidade() {
+        return medicoRepository.buscarIdsLivresNaData(Especialidade.CARDIOLOGIA, horario(ThreadLocalRandom.current().nextInt(horas)));
+    }
+
+    @Benchmark
+    public List<DadosListagemMedico> primeiraPaginaAtivosPorNome() {
+        return medicoRepository.listarAtivosPorNome(PageRequest.of(0, 10));
+    }
+
+    private static LocalDateTime horario(int hora) {
+        return INICIO.plusHours(hora);
+    }
+
+    private static void imprimirPlano(JdbcTemplate jdbc, String sql) {
+        System.out.println("\n" + jdbc.queryForObject("explain " + sql, String.class));
+    }
+
+}
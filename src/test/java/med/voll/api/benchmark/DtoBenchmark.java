@@ -0,0 +1,90 @@
+package med.voll.api.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import med.voll.api.domain.consulta.Consulta;
+import med.voll.api.domain.consulta.DadosDetalhamentoConsulta;
+import med.voll.api.domain.endereco.DadosEndereco;
+import med.voll.api.domain.medico.DadosCadastroMedico;
+import med.voll.api.domain.medico.DadosListagemMedico;
+import med.voll.api.domain.medico.Especialidade;
+import med.voll.api.domain.medico.Medico;
+import med.voll.api.domain.paciente.DadosCadastroPaciente;
+import med.voll.api.domain.paciente.Paciente;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Custo dos DTOs de resposta sem banco: montar DadosListagemMedico e DadosDetalhamentoConsulta a partir
+ * das entidades e serializar um Page<DadosListagemMedico> com o ObjectMapper configurado como o do Spring Boot.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class DtoBenchmark {
+
+    @Param({"10", "100"})
+    private int tamanhoPagina;
+
+    private ObjectMapper objectMapper;
+    private Medico medico;
+    private Consulta consulta;
+    private Page<DadosListagemMedico> pagina;
+
+    @Setup
+    public void iniciar() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        var endereco = new DadosEndereco("rua 1", "centro", "00000000", "Sao Paulo", "SP", null, "10");
+        medico = new Medico(new DadosCadastroMedico("Ana Souza", "ana.souza@voll.med", "11999999999", "123456",
+                Especialidade.CARDIOLOGIA, endereco));
+        ReflectionTestUtils.setField(medico, "id", 1L);
+        var paciente = new Paciente(new DadosCadastroPaciente("Bruno Lima", "bruno.lima@voll.med", "11988888888",
+                "000.000.000-00", endereco));
+        ReflectionTestUtils.setField(paciente, "id", 1L);
+        consulta = new Consulta(1L, medico, paciente, LocalDateTime.now().plusDays(1));
+
+        var medicos = new ArrayList<DadosListagemMedico>(tamanhoPagina);
+        for (long i = 1; i <= tamanhoPagina; i++) {
+            medicos.add(new DadosListagemMedico(i, "Medico " + i, "medico" + i + "@voll.med", String.valueOf(100000 + i),
+                    Especialidade.values()[(int) (i % Especialidade.values().length)]));
+        }
+        pagina = new PageImpl<>(medicos, PageRequest.of(0, tamanhoPagina), 10_000);
+    }
+
+    @Benchmark
+    public DadosListagemMedico listagemMedico() {
+        return new DadosListagemMedico(medico);
+    }
+
+    @Benchmark
+    public DadosDetalhamentoConsulta detalhamentoConsulta() {
+        return new DadosDetalhamentoConsulta(consulta);
+    }
+
+    @Benchmark
+    public byte[] serializarPagina() throws Exception {
+        return objectMapper.writeValueAsBytes(pagina);
+    }
+
+    @Benchmark
+    public byte[] serializarLista() throws Exception {
+        return objectMapper.writeValueAsBytes(List.copyOf(pagina.getContent()));
+    }
+
+}
@@ -0,0 +1,94 @@
+package med.voll.api.benchmark;
+
+import med.voll.api.domain.consulta.DisponibilidadeMedicos;
+import med.voll.api.domain.consulta.IndiceOcupacaoAgenda;
+import med.voll.api.domain.medico.Especialidade;
+import med.voll.api.domain.medico.Medico;
+import med.voll.api.domain.medico.MedicoRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compara o sorteio de médico livre da DisponibilidadeMedicos com a consulta
+ * MedicoRepository.escolherMedicoAleatorioLivreNaData (order by rand()) com 10 mil médicos por especialidade,
+ * metade deles com consulta no horario sorteado. Com noHorizonte=false o horario fica fora do horizonte do
+ * IndiceOcupacaoAgenda e cada sorteado é conferido no banco, o caminho sem nada em memoria além dos ids.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EscolhaMedicoLivreBenchmark {
+
+    @Param({"10000"})
+    private int medicosPorEspecialidade;
+
+    @Param({"true", "false"})
+    private boolean noHorizonte;
+
+    private ConfigurableApplicationContext contexto;
+    private MedicoRepository medicoRepository;
+    private DisponibilidadeMedicos disponibilidadeMedicos;
+    private LocalDateTime horario;
+
+    @Setup
+    public void iniciar() {
+        contexto = AplicacaoBenchmark.iniciar("escolha_medico");
+        medicoRepository = contexto.getBean(MedicoRepository.class);
+        disponibilidadeMedicos = contexto.getBean(DisponibilidadeMedicos.class);
+        var dia = noHorizonte ? LocalDate.now() : LocalDate.now().plusDays(365);
+        horario = dia.with(TemporalAdjusters.next(DayOfWeek.MONDAY)).atTime(10, 0);
+
+        var jdbc = contexto.getBean(JdbcTemplate.class);
+        jdbc.update("""
+                insert into pacientes(nome, email, cpf, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values('Paciente', 'paciente@voll.med', '000.000.000-00', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """);
+
+        var medicos = new ArrayList<Object[]>();
+        var crm = 100000;
+        for (var especialidade : Especialidade.values()) {
+            for (int i = 0; i < medicosPorEspecialidade; i++, crm++) {
+                medicos.add(new Object[]{"Medico " + crm, crm + "@voll.med", String.valueOf(crm), especialidade.name()});
+            }
+        }
+        jdbc.batchUpdate("""
+                insert into medicos(nome, email, crm, especialidade, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values(?, ?, ?, ?, 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """, medicos);
+
+        jdbc.update("""
+                insert into consultas(medico_id, paciente_id, data)
+                select id, (select min(id) from pacientes), ? from medicos where mod(id, 2) = 0
+                """, horario);
+
+        //As consultas foram gravadas por fora da aplicação, como por outra instancia.
+        contexto.getBean(IndiceOcupacaoAgenda.class).carregar();
+    }
+
+    @TearDown
+    public void encerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Medico consultaOrderByRand() {
+        return medicoRepository.escolherMedicoAleatorioLivreNaData(Especialidade.CARDIOLOGIA, horario);
+    }
+
+    @Benchmark
+    public Long disponibilidadeEmMemoria() {
+        return disponibilidadeMedicos.escolherMedicoLivre(Especialidade.CARDIOLOGIA, horario);
+    }
+
+}
@@ -0,0 +1,69 @@
+package med.voll.api.benchmark;
+
+import med.voll.api.domain.medico.Especialidade;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+
+/*
+ * Gera medicos, pacientes e consultas direto por SQL (system_range do H2), sem passar pelo Hibernate,
+ * para montar bases com milhões de linhas em poucos segundos.
+ * As consultas são distribuidas de forma que cada médico tenha no maximo uma consulta por horario.
+ * As versões com faixa (primeiro/ultimo) permitem gerar bases grandes em blocos, cada um em uma transação.
+ * */
+public final class GeradorDeDados {
+
+    private GeradorDeDados() {
+    }
+
+    public static void gerarMedicos(JdbcTemplate jdbc, int quantidade) {
+        gerarMedicos(jdbc, 1, quantidade);
+    }
+
+    public static void gerarMedicos(JdbcTemplate jdbc, long primeiro, long ultimo) {
+        var especialidades = Especialidade.values();
+        jdbc.update("""
+                insert into medicos(nome, email, crm, especialidade, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                select 'Medico ' || x, 'medico' || x || '@voll.med', cast(x as varchar),
+                    casewhen(mod(x, 4) = 0, ?, casewhen(mod(x, 4) = 1, ?, casewhen(mod(x, 4) = 2, ?, ?))),
+                    'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', mod(x, 10) <> 0
+                from system_range(?, ?)
+                """, especialidades[0].name(), especialidades[1].name(), especialidades[2].name(), especialidades[3].name(), primeiro, ultimo);
+    }
+
+    public static void gerarPacientes(JdbcTemplate jdbc, int quantidade) {
+        gerarPacientes(jdbc, 1, quantidade);
+    }
+
+    public static void gerarPacientes(JdbcTemplate jdbc, long primeiro, long ultimo) {
+        jdbc.update("""
+                insert into pacientes(nome, email, cpf, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                select 'Paciente ' || x, 'paciente' || x || '@voll.med', cast(x as varchar),
+                    'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', mod(x, 10) <> 0
+                from system_range(?, ?)
+                """, primeiro, ultimo);
+    }
+
+    //Todos os usuarios usuarioX@voll.med com o mesmo hash, para não calcular um bcrypt por linha.
+    public static void gerarUsuarios(JdbcTemplate jdbc, long quantidade, String hashSenha) {
+        jdbc.update("""
+                insert into usuarios(login, senha)
+                select 'usuario' || x || '@voll.med', ?
+                from system_range(1, ?)
+                """, hashSenha, quantidade);
+    }
+
+    //A consulta x fica com o médico x % medicos no horario x / medicos, em horas a partir do inicio.
+    public static void gerarConsultas(JdbcTemplate jdbc, int quantidade, int medicos, int pacientes, LocalDateTime inicio) {
+        gerarConsultas(jdbc, 0, quantidade, medicos, pacientes, inicio);
+    }
+
+    public static void gerarConsultas(JdbcTemplate jdbc, long primeira, long quantidade, long medicos, long pacientes, LocalDateTime inicio) {
+        jdbc.update("""
+                insert into consultas(medico_id, paciente_id, data)
+                select mod(x, ?) + 1, mod(x * 7919, ?) + 1, dateadd('HOUR', x / ?, ?)
+                from system_range(?, ?)
+                """, medicos, pacientes, medicos, inicio, primeira, primeira + quantidade - 1);
+    }
+
+}
@@ -0,0 +1,145 @@
+package med.voll.api.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import med.voll.api.domain.endereco.DadosEndereco;
+import med.voll.api.domain.medico.CadastroDeMedicos;
+import med.voll.api.domain.medico.DadosCadastroMedico;
+import med.voll.api.domain.medico.Especialidade;
+import med.voll.api.domain.paciente.CadastroDePacientes;
+import med.voll.api.domain.paciente.DadosCadastroPaciente;
+import med.voll.api.infra.importacao.FormatoImportacao;
+import med.voll.api.infra.importacao.ImportacaoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/*
+ * Cadastro de 100 mil medicos ou pacientes em uma tabela vazia:
+ * - UNITARIO: um cadastrar por linha, como uma sequencia de POST /medicos (uma transação e um insert cada);
+ * - CSV e NDJSON: a mesma entrada pelo ImportacaoService, em blocos gravados com batch do JDBC.
+ * Com @OperationsPerInvocation o resultado sai em tempo por linha, ex: 5 us/op são 200 mil linhas por segundo.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(ImportacaoBenchmark.LINHAS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Threads(1)
+@Fork(1)
+public class ImportacaoBenchmark {
+
+    static final int LINHAS = 100_000;
+
+    @Param({"medicos", "pacientes"})
+    private String tipo;
+
+    @Param({"UNITARIO", "CSV", "NDJSON"})
+    private String modo;
+
+    private ConfigurableApplicationContext contexto;
+    private JdbcTemplate jdbc;
+    private ImportacaoService importacao;
+    private CadastroDeMedicos cadastroDeMedicos;
+    private CadastroDePacientes cadastroDePacientes;
+    private List<DadosCadastroMedico> medicos;
+    private List<DadosCadastroPaciente> pacientes;
+    private String entrada;
+
+    @Setup
+    public void iniciar() throws IOException {
+        contexto = AplicacaoBenchmark.iniciar("importacao_" + tipo + "_" + modo);
+        jdbc = contexto.getBean(JdbcTemplate.class);
+        importacao = contexto.getBean(ImportacaoService.class);
+        cadastroDeMedicos = contexto.getBean(CadastroDeMedicos.class);
+        cadastroDePacientes = contexto.getBean(CadastroDePacientes.class);
+
+        var especialidades = Especialidade.values();
+        var endereco = new DadosEndereco("rua", "bairro", "00000000", "Sao Paulo", "SP", null, null);
+        medicos = IntStream.range(0, LINHAS)
+                .mapToObj(i -> new DadosCadastroMedico("Medico " + i, "medico" + i + "@voll.med", "0",
+                        String.valueOf(100_000 + i), especialidades[i % especialidades.length], endereco))
+                .toList();
+        pacientes = IntStream.range(0, LINHAS)
+                .mapToObj(i -> new DadosCadastroPaciente("Paciente " + i, "paciente" + i + "@voll.med", "0",
+                        "%03d.%03d.000-%02d".formatted(i / 100_000, i / 100 % 1000, i % 100), endereco))
+                .toList();
+
+        if (!modo.equals("UNITARIO")) {
+            List<? extends Record> registros = tipo.equals("medicos") ? medicos : pacientes;
+            entrada = modo.equals("CSV") ? csv(registros) : ndjson(registros, contexto.getBean(ObjectMapper.class));
+        }
+    }
+
+    //Cada medição começa com a tabela vazia.
+    @Setup(Level.Iteration)
+    public void limpar() {
+        jdbc.update("delete from " + tipo);
+    }
+
+    @TearDown
+    public void encerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public int importar() throws IOException {
+        if (modo.equals("UNITARIO")) {
+            if (tipo.equals("medicos")) {
+                medicos.forEach(cadastroDeMedicos::cadastrar);
+            } else {
+                pacientes.forEach(cadastroDePacientes::cadastrar);
+            }
+            return LINHAS;
+        }
+
+        var formato = FormatoImportacao.valueOf(modo);
+        var resultado = tipo.equals("medicos")
+                ? importacao.importarMedicos(formato, new StringReader(entrada))
+                : importacao.importarPacientes(formato, new StringReader(entrada));
+        if (resultado.importadas() != LINHAS) {
+            throw new IllegalStateException("Importadas " + resultado.importadas() + " de " + LINHAS + ": "
+                    + resultado.erros().subList(0, Math.min(3, resultado.erros().size())));
+        }
+        return resultado.importadas();
+    }
+
+    private static String csv(List<? extends Record> registros) {
+        var csv = new StringBuilder();
+        for (var registro : registros) {
+            if (registro instanceof DadosCadastroMedico medico) {
+                if (csv.isEmpty()) {
+                    csv.append("nome,email,telefone,crm,especialidade,logradouro,bairro,cep,cidade,uf\n");
+                }
+                csv.append(String.join(",", medico.nome(), medico.email(), medico.telefone(), medico.crm(),
+                        medico.especialidade().name(), endereco(medico.endereco()))).append('\n');
+            } else if (registro instanceof DadosCadastroPaciente paciente) {
+                if (csv.isEmpty()) {
+                    csv.append("nome,email,telefone,cpf,logradouro,bairro,cep,cidade,uf\n");
+                }
+                csv.append(String.join(",", paciente.nome(), paciente.email(), paciente.telefone(), paciente.cpf(),
+                        endereco(paciente.endereco()))).append('\n');
+            }
+        }
+        return csv.toString();
+    }
+
+    private static String endereco(DadosEndereco endereco) {
+        return String.join(",", endereco.logradouro(), endereco.bairro(), endereco.cep(), endereco.cidade(), endereco.uf());
+    }
+
+    private static String ndjson(List<? extends Record> registros, ObjectMapper objectMapper) throws IOException {
+        var ndjson = new StringBuilder();
+        for (var registro : registros) {
+            ndjson.append(objectMapper.writeValueAsString(registro)).append('\n');
+        }
+        return ndjson.toString();
+    }
+
+}
@@ -0,0 +1,56 @@
+package med.voll.api.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Tempo de um login (matches) e de um cadastro de senha (encode) com o bcrypt em alguns custos
+ * (api.security.senha.bcrypt.custo) e com o pbkdf2 usado quando api.security.senha.algoritmo=pbkdf2.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class SenhaBenchmark {
+
+    private static final String SENHA = "123456";
+
+    @Param({"8", "10", "12"})
+    private int custoBcrypt;
+
+    private BCryptPasswordEncoder bcrypt;
+    private Pbkdf2PasswordEncoder pbkdf2;
+    private String hashBcrypt;
+    private String hashPbkdf2;
+
+    @Setup
+    public void iniciar() {
+        bcrypt = new BCryptPasswordEncoder(custoBcrypt);
+        pbkdf2 = Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8();
+        hashBcrypt = bcrypt.encode(SENHA);
+        hashPbkdf2 = pbkdf2.encode(SENHA);
+    }
+
+    @Benchmark
+    public boolean conferirBcrypt() {
+        return bcrypt.matches(SENHA, hashBcrypt);
+    }
+
+    @Benchmark
+    public String gerarBcrypt() {
+        return bcrypt.encode(SENHA);
+    }
+
+    //Não depende do custoBcrypt, repetido em cada parametro só como referencia.
+    @Benchmark
+    public boolean conferirPbkdf2() {
+        return pbkdf2.matches(SENHA, hashPbkdf2);
+    }
+
+}
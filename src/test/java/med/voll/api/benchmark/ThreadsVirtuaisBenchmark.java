@@ -0,0 +1,79 @@
+package med.voll.api.benchmark;
+
+import med.voll.api.domain.usuario.Usuario;
+import med.voll.api.domain.usuario.UsuarioRepository;
+import med.voll.api.infra.security.TokenService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Compara o modo padrão (pool de threads do Tomcat) com o perfil threads-virtuais disparando
+ * milhares de requisições simultaneas contra a listagem por cursor, que vai ao banco em toda chamada.
+ * O modo virtual precisa do JDK 21: mvn -Pbenchmark,threads-virtuais verify -Djmh.filtro=ThreadsVirtuais
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadsVirtuaisBenchmark {
+
+    @Param({"false", "true"})
+    private boolean threadsVirtuais;
+
+    @Param({"2000"})
+    private int clientesSimultaneos;
+
+    private ConfigurableApplicationContext contexto;
+    private HttpClient cliente;
+    private HttpRequest requisicao;
+
+    @Setup
+    public void iniciar() {
+        contexto = AplicacaoBenchmark.iniciar("threads_virtuais_" + threadsVirtuais,
+                "spring.profiles.active=" + (threadsVirtuais ? "threads-virtuais" : "default"),
+                "spring.datasource.hikari.maximum-pool-size=20");
+
+        var jdbc = contexto.getBean(JdbcTemplate.class);
+        GeradorDeDados.gerarMedicos(jdbc, 1000);
+        jdbc.update("insert into usuarios(login, senha) values('carga@voll.med', 'nao usada')");
+        var usuario = (Usuario) contexto.getBean(UsuarioRepository.class).findByLogin("carga@voll.med");
+        var token = contexto.getBean(TokenService.class).gerarToken(usuario);
+
+        var porta = ((WebServerApplicationContext) contexto).getWebServer().getPort();
+        requisicao = HttpRequest.newBuilder(URI.create("http://localhost:" + porta + "/medicos/cursor?tamanho=20"))
+                .header("Authorization", "Bearer " + token)
+                .build();
+        cliente = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(8))
+                .build();
+    }
+
+    @TearDown
+    public void encerrar() {
+        contexto.close();
+    }
+
+    //Tempo de uma rajada de clientesSimultaneos requisições em voo ao mesmo tempo.
+    @Benchmark
+    public int rajadaDeRequisicoes() {
+        var respostas = new CompletableFuture<?>[clientesSimultaneos];
+        for (int i = 0; i < clientesSimultaneos; i++) {
+            respostas[i] = cliente.sendAsync(requisicao, HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(respostas).join();
+        return respostas.length;
+    }
+
+}
@@ -0,0 +1,78 @@
+package med.voll.api.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import med.voll.api.domain.usuario.Usuario;
+import med.voll.api.infra.security.TokenService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Tokens verificados por segundo em uma thread (um nucleo):
+ * - semReuso: como o TokenService fazia antes, criando Algorithm e JWTVerifier a cada chamada;
+ * - verificadorPronto: JWTVerifier reaproveitado, com o cache de tokens desligado (tamanho 0);
+ * - tokenEmCache: o mesmo token repetido, respondido pelo cache de tokens verificados;
+ * - gerarToken: assinatura de um token novo, o custo de cada login depois da senha conferida.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class TokenServiceBenchmark {
+
+    private static final String SECRET = "12345678";
+
+    private TokenService semCache;
+    private TokenService comCache;
+    private String token;
+    private Usuario usuario;
+
+    @Setup
+    public void iniciar() {
+        semCache = novoTokenService(0);
+        comCache = novoTokenService(10_000);
+        usuario = new Usuario(1L, "ana.souza@voll.med", "senha");
+        token = comCache.gerarToken(usuario);
+    }
+
+    @Benchmark
+    public String semReuso() {
+        var algoritmo = Algorithm.HMAC256(SECRET);
+        return JWT.require(algoritmo)
+                .withIssuer("API Voll.med")
+                .build()
+                .verify(token)
+                .getSubject();
+    }
+
+    @Benchmark
+    public String verificadorPronto() {
+        return semCache.getSubject(token);
+    }
+
+    @Benchmark
+    public String tokenEmCache() {
+        return comCache.getSubject(token);
+    }
+
+    @Benchmark
+    public String gerarToken() {
+        return comCache.gerarToken(usuario);
+    }
+
+    private static TokenService novoTokenService(long tamanhoMaximoCache) {
+        var tokenService = new TokenService();
+        ReflectionTestUtils.setField(tokenService, "secret", SECRET);
+        ReflectionTestUtils.setField(tokenService, "tamanhoMaximoCache", tamanhoMaximoCache);
+        ReflectionTestUtils.setField(tokenService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(tokenService, "inicializar");
+        return tokenService;
+    }
+
+}
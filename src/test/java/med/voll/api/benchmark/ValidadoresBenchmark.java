@@ -0,0 +1,83 @@
+package med.voll.api.benchmark;
+
+import med.voll.api.domain.consulta.ConsultaRepository;
+import med.voll.api.domain.consulta.DadosAgendamentoConsulta;
+import med.voll.api.domain.consulta.validacoes.ContextoAgendamento;
+import med.voll.api.domain.consulta.validacoes.ValidadorAgendamentoDeConsulta;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cada validador do agendamento isolado, com um agendamento valido sobre 1000 médicos, 1000 pacientes e 100 mil consultas:
+ * - comDados: validar(DadosAgendamentoConsulta), que nos validadores de CONTEXTO ainda faz a propria consulta ao banco;
+ * - comContexto: validar(ContextoAgendamento), o caminho usado pela AgendaDeConsultas depois da verificação unica.
+ * */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class ValidadoresBenchmark {
+
+    @Param({
+            "ValidadorHorarioAntecedencia",
+            "ValidadorHorarioFuncionamentoClinica",
+            "ValidadorMedicoAtivo",
+            "ValidadorPacienteAtivo",
+            "ValidadorMedicoComOutraConsultaNoMesmoHorario",
+            "ValidadorPacienteSemOutraConsultaNoDia"})
+    private String validador;
+
+    private ConfigurableApplicationContext contexto;
+    private ValidadorAgendamentoDeConsulta alvo;
+    private DadosAgendamentoConsulta dados;
+    private ContextoAgendamento contextoAgendamento;
+
+    @Setup
+    public void iniciar() {
+        contexto = AplicacaoBenchmark.iniciar("validadores_" + validador);
+        var jdbc = contexto.getBean(JdbcTemplate.class);
+        GeradorDeDados.gerarMedicos(jdbc, 1000);
+        GeradorDeDados.gerarPacientes(jdbc, 1000);
+        GeradorDeDados.gerarConsultas(jdbc, 100_000, 1000, 1000, LocalDate.now().plusDays(1).atStartOfDay());
+
+        alvo = contexto.getBeansOfType(ValidadorAgendamentoDeConsulta.class).values().stream()
+                .filter(v -> v.getClass().getSimpleName().equals(validador))
+                .findFirst()
+                .orElseThrow();
+
+        //Depois das consultas geradas (100 horas a partir de amanhã), em uma segunda-feira às 10h.
+        var dia = LocalDate.now().plusDays(10);
+        while (dia.getDayOfWeek() != DayOfWeek.MONDAY) {
+            dia = dia.plusDays(1);
+        }
+        dados = new DadosAgendamentoConsulta(1L, 1L, dia.atTime(10, 0), null);
+
+        var verificacao = contexto.getBean(ConsultaRepository.class).verificarAgendamento(dados.idPaciente(), dados.idMedico(),
+                dados.data(), dia.atStartOfDay(), dia.plusDays(1).atStartOfDay(), true, true);
+        contextoAgendamento = new ContextoAgendamento(dados, verificacao);
+    }
+
+    @TearDown
+    public void encerrar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public void comDados() {
+        alvo.validar(dados);
+    }
+
+    @Benchmark
+    public void comContexto() {
+        alvo.validar(contextoAgendamento);
+    }
+
+}
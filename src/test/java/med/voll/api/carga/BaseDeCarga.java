@@ -0,0 +1,68 @@
+package med.voll.api.carga;
+
+import med.voll.api.benchmark.GeradorDeDados;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.LocalDate;
+
+/*
+ * Cria (uma unica vez) a base do teste de carga em um H2 em arquivo, com as migrations do Flyway e os
+ * volumes configurados. Cada bloco de BLOCO linhas é um insert proprio, para não montar uma transação gigante.
+ * Uma base já preenchida é reaproveitada; para gerar de novo com outros volumes basta apagar o arquivo.
+ * */
+final class BaseDeCarga {
+
+    static final String SENHA = "123456";
+
+    private static final long BLOCO = 1_000_000;
+
+    private BaseDeCarga() {
+    }
+
+    static void preparar(String url, Volumes volumes) {
+        Flyway.configure()
+                .dataSource(url, "sa", "")
+                .locations("classpath:db/migration", "classpath:db/vendor/h2")
+                .load()
+                .migrate();
+
+        var dataSource = new SingleConnectionDataSource(url, "sa", "", true);
+        try {
+            var jdbc = new JdbcTemplate(dataSource);
+            if (jdbc.queryForObject("select count(*) from medicos", Long.class) > 0) {
+                System.out.println("Base de carga já preenchida, reaproveitando: " + url);
+                return;
+            }
+
+            var inicio = System.nanoTime();
+            for (long primeiro = 1; primeiro <= volumes.medicos(); primeiro += BLOCO) {
+                GeradorDeDados.gerarMedicos(jdbc, primeiro, Math.min(volumes.medicos(), primeiro + BLOCO - 1));
+            }
+            for (long primeiro = 1; primeiro <= volumes.pacientes(); primeiro += BLOCO) {
+                GeradorDeDados.gerarPacientes(jdbc, primeiro, Math.min(volumes.pacientes(), primeiro + BLOCO - 1));
+                System.out.printf("pacientes: %d/%d%n", Math.min(volumes.pacientes(), primeiro + BLOCO - 1), volumes.pacientes());
+            }
+            GeradorDeDados.gerarUsuarios(jdbc, volumes.usuarios(), "{bcrypt}" + new BCryptPasswordEncoder(10).encode(SENHA));
+
+            //As consultas começam amanhã e seguem de hora em hora, uma por médico em cada horario.
+            var primeiroHorario = LocalDate.now().plusDays(1).atStartOfDay();
+            for (long primeira = 0; primeira < volumes.consultas(); primeira += BLOCO) {
+                var quantidade = Math.min(BLOCO, volumes.consultas() - primeira);
+                GeradorDeDados.gerarConsultas(jdbc, primeira, quantidade, volumes.medicos(), volumes.pacientes(), primeiroHorario);
+                System.out.printf("consultas: %d/%d%n", primeira + quantidade, volumes.consultas());
+            }
+
+            jdbc.execute("analyze");
+            System.out.printf("Base de carga gerada em %d s: %s%n", (System.nanoTime() - inicio) / 1_000_000_000, volumes);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    record Volumes(long medicos, long pacientes, long consultas, long usuarios) {
+    }
+
+}
@@ -0,0 +1,244 @@
+package med.voll.api.carga;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import med.voll.api.benchmark.AplicacaoBenchmark;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Teste de carga de ponta a ponta: gera a base (BaseDeCarga) em um H2 em arquivo, sobe a aplicação sobre ela e
+ * mantem "clientes" requisições em voo durante "duracao" segundos, sorteadas pela mistura de Operacao.
+ * No fim imprime, por operação, a vazão, os status e as latencias p50/p99/p999.
+ *
+ * mvn -Pcarga verify -Dcarga.medicos=50000 -Dcarga.pacientes=5000000 -Dcarga.consultas=50000000
+ * Com -Dcarga.endereco=http://host:8080 a carga vai para uma aplicação já rodando (a base não é gerada).
+ * */
+public class TesteDeCarga {
+
+    private static final String[] ESPECIALIDADES = {"ORTOPEDIA", "CARDIOLOGIA", "GINECOLOGIA", "DERMATOLOGIA"};
+
+    //Peso de cada operação na mistura, em partes de 100.
+    enum Operacao {
+        LOGIN(2),
+        LISTAR_MEDICOS(15),
+        LISTAR_MEDICOS_CURSOR(10),
+        DETALHAR_MEDICO(25),
+        DETALHAR_PACIENTE(15),
+        AGENDA_DO_MEDICO(13),
+        AGENDAR(20);
+
+        private final int peso;
+
+        Operacao(int peso) {
+            this.peso = peso;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var volumes = new BaseDeCarga.Volumes(
+                Long.getLong("carga.medicos", 5_000),
+                Long.getLong("carga.pacientes", 500_000),
+                Long.getLong("carga.consultas", 5_000_000),
+                Long.getLong("carga.usuarios", 1_000));
+        var clientes = Integer.getInteger("carga.clientes", 200);
+        var duracao = Duration.ofSeconds(Integer.getInteger("carga.duracao", 60));
+        var endereco = System.getProperty("carga.endereco");
+
+        ConfigurableApplicationContext contexto = null;
+        if (endereco == null) {
+            var arquivo = Path.of(System.getProperty("carga.banco", "target/carga/vollmed")).toAbsolutePath();
+            var url = "jdbc:h2:file:" + arquivo + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+            BaseDeCarga.preparar(url, volumes);
+
+            //A url em arquivo substitui a do banco em memoria usada pelos benchmarks.
+            contexto = AplicacaoBenchmark.iniciar("carga", "spring.datasource.url=" + url);
+            endereco = "http://localhost:" + ((WebServerApplicationContext) contexto).getWebServer().getPort();
+        }
+
+        try {
+            var carga = new TesteDeCarga(endereco, volumes);
+            carga.aquecer(clientes, Duration.ofSeconds(Integer.getInteger("carga.aquecimento", 15)));
+            carga.executar(clientes, duracao);
+        } finally {
+            if (contexto != null) {
+                contexto.close();
+            }
+        }
+    }
+
+    private final HttpClient cliente = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String endereco;
+    private final BaseDeCarga.Volumes volumes;
+    private final Operacao[] sorteio = new Operacao[100];
+    private final String token;
+
+    private Map<Operacao, Medicoes> medicoes;
+    private final AtomicLong erros = new AtomicLong();
+
+    private TesteDeCarga(String endereco, BaseDeCarga.Volumes volumes) throws IOException, InterruptedException {
+        this.endereco = endereco;
+        this.volumes = volumes;
+
+        var posicao = 0;
+        for (var operacao : Operacao.values()) {
+            Arrays.fill(sorteio, posicao, posicao + operacao.peso, operacao);
+            posicao += operacao.peso;
+        }
+
+        var resposta = cliente.send(login(1), HttpResponse.BodyHandlers.ofString());
+        if (resposta.statusCode() != 200) {
+            throw new IllegalStateException("Login do teste de carga falhou: " + resposta.statusCode() + " " + resposta.body());
+        }
+        token = objectMapper.readTree(resposta.body()).get("token").asText();
+    }
+
+    //Mesma carga por um tempo, sem guardar as medições: JIT, caches e pool de conexões chegam aquecidos na medição.
+    private void aquecer(int clientes, Duration duracao) throws InterruptedException {
+        rodar(clientes, duracao);
+        erros.set(0);
+    }
+
+    private void executar(int clientes, Duration duracao) throws InterruptedException {
+        rodar(clientes, duracao);
+
+        System.out.printf("%s, %d clientes, %d s, falhas de conexão=%d%n", endereco, clientes, duracao.toSeconds(), erros.get());
+        System.out.printf("%-22s %10s %10s %10s %10s %10s  %s%n", "operacao", "total", "req/s", "p50 ms", "p99 ms", "p999 ms", "status");
+        medicoes.forEach((operacao, medicao) -> medicao.imprimir(operacao, duracao));
+    }
+
+    private void rodar(int clientes, Duration duracao) throws InterruptedException {
+        medicoes = new EnumMap<>(Operacao.class);
+        for (var operacao : Operacao.values()) {
+            medicoes.put(operacao, new Medicoes());
+        }
+
+        var fim = System.nanoTime() + duracao.toNanos();
+        var encerrados = new CountDownLatch(clientes);
+        for (int i = 0; i < clientes; i++) {
+            enviar(fim, encerrados);
+        }
+        encerrados.await();
+    }
+
+    //Cada cliente envia a proxima requisição assim que recebe a resposta da anterior.
+    private void enviar(long fim, CountDownLatch encerrados) {
+        if (System.nanoTime() >= fim) {
+            encerrados.countDown();
+            return;
+        }
+
+        var operacao = sorteio[ThreadLocalRandom.current().nextInt(sorteio.length)];
+        var medicao = medicoes.get(operacao);
+        var inicio = System.nanoTime();
+        cliente.sendAsync(requisicao(operacao), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((resposta, erro) -> {
+                    if (erro != null) {
+                        erros.incrementAndGet();
+                    } else {
+                        medicao.registrar(resposta.statusCode(), System.nanoTime() - inicio);
+                    }
+                    enviar(fim, encerrados);
+                });
+    }
+
+    private HttpRequest requisicao(Operacao operacao) {
+        var aleatorio = ThreadLocalRandom.current();
+        return switch (operacao) {
+            case LOGIN -> login(aleatorio.nextLong(1, volumes.usuarios() + 1));
+            case LISTAR_MEDICOS -> get("/medicos?page=" + aleatorio.nextInt(50));
+            case LISTAR_MEDICOS_CURSOR -> get("/medicos/cursor?tamanho=20");
+            case DETALHAR_MEDICO -> get("/medicos/" + aleatorio.nextLong(1, volumes.medicos() + 1));
+            case DETALHAR_PACIENTE -> get("/pacientes/" + aleatorio.nextLong(1, volumes.pacientes() + 1));
+            case AGENDA_DO_MEDICO -> get("/consultas/medicos/" + aleatorio.nextLong(1, volumes.medicos() + 1));
+            case AGENDAR -> agendar(aleatorio);
+        };
+    }
+
+    private HttpRequest login(long usuario) {
+        var corpo = """
+                {"login": "usuario%d@voll.med", "senha": "%s"}
+                """.formatted(usuario, BaseDeCarga.SENHA);
+        return HttpRequest.newBuilder(URI.create(endereco + "/login"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(corpo))
+                .build();
+    }
+
+    private HttpRequest get(String caminho) {
+        return HttpRequest.newBuilder(URI.create(endereco + caminho))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest agendar(ThreadLocalRandom aleatorio) {
+        var dia = LocalDate.now().plusDays(1 + aleatorio.nextInt(60));
+        if (dia.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            dia = dia.plusDays(1);
+        }
+        var corpo = """
+                {"idPaciente": %d, "data": "%sT%02d:00:00", "especialidade": "%s"}
+                """.formatted(aleatorio.nextLong(1, volumes.pacientes() + 1), dia, 7 + aleatorio.nextInt(12),
+                ESPECIALIDADES[aleatorio.nextInt(ESPECIALIDADES.length)]);
+
+        return HttpRequest.newBuilder(URI.create(endereco + "/consultas"))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .POST(HttpRequest.BodyPublishers.ofString(corpo))
+                .build();
+    }
+
+    //Latencias e status de uma operação.
+    private static class Medicoes {
+
+        private final Map<Integer, Long> respostasPorStatus = new TreeMap<>();
+        private long[] latencias = new long[1 << 16];
+        private int total;
+
+        synchronized void registrar(int status, long latencia) {
+            respostasPorStatus.merge(status, 1L, Long::sum);
+            if (total == latencias.length) {
+                latencias = Arrays.copyOf(latencias, latencias.length * 2);
+            }
+            latencias[total++] = latencia;
+        }
+
+        synchronized void imprimir(Operacao operacao, Duration duracao) {
+            var ordenadas = Arrays.copyOf(latencias, total);
+            Arrays.sort(ordenadas);
+            System.out.printf("%-22s %10d %10.0f %10.1f %10.1f %10.1f  %s%n", operacao, total,
+                    total / (double) duracao.toSeconds(), percentil(ordenadas, 0.50), percentil(ordenadas, 0.99),
+                    percentil(ordenadas, 0.999), respostasPorStatus);
+        }
+
+        private static double percentil(long[] ordenadas, double percentil) {
+            if (ordenadas.length == 0) {
+                return 0;
+            }
+            var indice = (int) Math.min(ordenadas.length - 1, Math.ceil(percentil * ordenadas.length) - 1);
+            return ordenadas[Math.max(0, indice)] / 1_000_000.0;
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+package med.voll.api.domain.consulta;
+
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.validacoes.ValidadorMedicoComOutraConsultaNoMesmoHorario;
+import med.voll.api.domain.medico.Especialidade;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+
+/*
+ * Dispara muitos agendamentos ao mesmo tempo para o mesmo horario e confere que nenhum médico
+ * e nenhum paciente termina com duas consultas onde só cabe uma, inclusive misturando lotes e agendamentos unitarios.
+ * Um médico sorteado que só o banco sabe estar ocupado é trocado por outro, também nos itens do lote.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:agenda_concorrencia;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=40",
+        "spring.jpa.show-sql=false"})
+class AgendaDeConsultasConcorrenciaTest {
+
+    private static final int THREADS = 32;
+    private static final int AGENDAMENTOS = 200;
+
+    private static final AtomicInteger SEQUENCIA = new AtomicInteger(100000);
+
+    @Autowired
+    private AgendaDeConsultas agenda;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @SpyBean
+    private ConsultaRepository consultaRepository;
+
+    @Test
+    void mesmoMedicoNoMesmoHorarioSoAceitaUmaConsulta() throws Exception {
+        var horario = proximo(DayOfWeek.MONDAY).atTime(10, 0);
+        var idMedico = criarMedico(Especialidade.CARDIOLOGIA);
+        var pacientes = criarPacientes(AGENDAMENTOS);
+
+        var agendados = agendarEmParalelo(pacientes.stream()
+                .map(idPaciente -> new DadosAgendamentoConsulta(idMedico, idPaciente, horario, null))
+                .toList());
+
+        assertThat(agendados).isEqualTo(1);
+        assertThat(consultasDoMedicoNoHorario(idMedico, horario)).isEqualTo(1);
+    }
+
+    @Test
+    void mesmoPacienteNoMesmoDiaSoAceitaUmaConsulta() throws Exception {
+        var dia = proximo(DayOfWeek.TUESDAY);
+        var idPaciente = criarPacientes(1).get(0);
+        var agendamentos = new ArrayList<DadosAgendamentoConsulta>();
+        for (int i = 0; i < AGENDAMENTOS; i++) {
+            agendamentos.add(new DadosAgendamentoConsulta(criarMedico(Especialidade.ORTOPEDIA), idPaciente, dia.atTime(8 + i % 10, 0), null));
+        }
+
+        var agendados = agendarEmParalelo(agendamentos);
+
+        assertThat(agendados).isEqualTo(1);
+        assertThat(jdbc.queryForObject("select count(*) from consultas where paciente_id = ? and data between ? and ?",
+                Integer.class, idPaciente, dia.atTime(7, 0), dia.atTime(18, 0))).isEqualTo(1);
+    }
+
+    @Test
+    void medicoSorteadoNaoRecebeDuasConsultasNoMesmoHorario() throws Exception {
+        var horario = proximo(DayOfWeek.WEDNESDAY).atTime(10, 0);
+        var medicos = new ArrayList<Long>();
+        for (int i = 0; i < 10; i++) {
+            medicos.add(criarMedico(Especialidade.DERMATOLOGIA));
+        }
+        var pacientes = criarPacientes(AGENDAMENTOS);
+
+        var agendados = agendarEmParalelo(pacientes.stream()
+                .map(idPaciente -> new DadosAgendamentoConsulta(null, idPaciente, horario, Especialidade.DERMATOLOGIA))
+                .toList());
+
+        assertThat(agendados).isEqualTo(medicos.size());
+        for (var idMedico : medicos) {
+            assertThat(consultasDoMedicoNoHorario(idMedico, horario)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void lotesEAgendamentosUnitariosConcorrentesNaoDuplicamOMedicoNoHorario() throws Exception {
+        var horario = proximo(DayOfWeek.THURSDAY).atTime(10, 0);
+        var idMedico = criarMedico(Especialidade.GINECOLOGIA);
+        var pacientes = criarPacientes(AGENDAMENTOS);
+
+        var executor = Executors.newFixedThreadPool(THREADS);
+        var largada = new CountDownLatch(1);
+        try {
+            var tarefas = new ArrayList<Callable<Integer>>();
+            for (int i = 0; i < pacientes.size(); i += 10) {
+                var bloco = pacientes.subList(i, i + 10).stream()
+                        .map(idPaciente -> new DadosAgendamentoConsulta(idMedico, idPaciente, horario, null))
+                        .toList();
+                if (i % 20 == 0) {
+                    tarefas.add(() -> {
+                        largada.await();
+                        return (int) agenda.agendarLote(bloco, 0).stream().filter(r -> r.consulta() != null).count();
+                    });
+                } else {
+                    tarefas.add(() -> {
+                        largada.await();
+                        var aceitos = 0;
+                        for (var dados : bloco) {
+                            try {
+                                agenda.agendar(dados);
+                                aceitos++;
+                            } catch (ValidacaoExcepition ex) {
+                                //Horario já ocupado por outro agendamento.
+                            }
+                        }
+                        return aceitos;
+                    });
+                }
+            }
+
+            var resultados = tarefas.stream().map(executor::submit).toList();
+            largada.countDown();
+            var aceitos = 0;
+            for (var resultado : resultados) {
+                aceitos += resultado.get();
+            }
+
+            assertThat(aceitos).isEqualTo(1);
+            assertThat(consultasDoMedicoNoHorario(idMedico, horario)).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void conflitoQueSoOBancoEnxergaRecusaApenasOItemDoLote() {
+        var horario = proximo(DayOfWeek.FRIDAY).atTime(9, 0);
+        var ocupado = criarMedico(Especialidade.CARDIOLOGIA);
+        var livre = criarMedico(Especialidade.CARDIOLOGIA);
+        var pacientes = criarPacientes(3);
+
+        //Gravada por fora da aplicação (como por outra instancia): os indices em memoria não sabem dela.
+        jdbc.update("insert into consultas(id, medico_id, paciente_id, data) values(?, ?, ?, ?)",
+                -SEQUENCIA.incrementAndGet(), ocupado, pacientes.get(0), horario);
+
+        var resultados = agenda.agendarLote(List.of(
+                new DadosAgendamentoConsulta(ocupado, pacientes.get(1), horario, null),
+                new DadosAgendamentoConsulta(livre, pacientes.get(2), horario, null)), 10);
+
+        assertThat(resultados).extracting(DadosResultadoAgendamento::indice).containsExactly(10, 11);
+        assertThat(resultados.get(0).consulta()).isNull();
+        assertThat(resultados.get(0).erro()).isEqualTo(ValidadorMedicoComOutraConsultaNoMesmoHorario.MENSAGEM);
+        assertThat(resultados.get(1).consulta()).isNotNull();
+        assertThat(consultasDoMedicoNoHorario(ocupado, horario)).isEqualTo(1);
+        assertThat(consultasDoMedicoNoHorario(livre, horario)).isEqualTo(1);
+    }
+
+    @Test
+    void medicoSorteadoQueSoOBancoVeOcupadoETrocadoNoItemDoLote() {
+        var dia = proximo(DayOfWeek.SATURDAY);
+        var ocupado = criarMedico(Especialidade.GINECOLOGIA);
+        criarMedico(Especialidade.GINECOLOGIA);
+        var pacientes = criarPacientes(11);
+
+        var agendamentos = new ArrayList<DadosAgendamentoConsulta>();
+        for (int hora = 8; hora < 18; hora++) {
+            var horario = dia.atTime(hora, 0);
+            jdbc.update("insert into consultas(id, medico_id, paciente_id, data) values(?, ?, ?, ?)",
+                    -SEQUENCIA.incrementAndGet(), ocupado, pacientes.get(0), horario);
+            agendamentos.add(new DadosAgendamentoConsulta(null, pacientes.get(hora - 7), horario, Especialidade.GINECOLOGIA));
+        }
+        //A consulta de outra instancia chega entre a conferencia do sorteado e o insert: só a restrição unica a enxerga.
+        doReturn(false).when(consultaRepository).existsByMedicoIdAndDataAndCanceladaFalse(eq(ocupado), any());
+
+        var resultados = agenda.agendarLote(agendamentos, 0);
+
+        assertThat(resultados).allSatisfy(resultado -> assertThat(resultado.erro()).isNull());
+        for (int hora = 8; hora < 18; hora++) {
+            assertThat(consultasDoMedicoNoHorario(ocupado, dia.atTime(hora, 0))).isEqualTo(1);
+        }
+    }
+
+    //Retorna quantos agendamentos foram aceitos; as recusas só podem ser erros de validação.
+    private int agendarEmParalelo(List<DadosAgendamentoConsulta> agendamentos) throws Exception {
+        var executor = Executors.newFixedThreadPool(THREADS);
+        var largada = new CountDownLatch(1);
+        try {
+            var tarefas = new ArrayList<Callable<Boolean>>();
+            for (var dados : agendamentos) {
+                tarefas.add(() -> {
+                    largada.await();
+                    try {
+                        agenda.agendar(dados);
+                        return true;
+                    } catch (ValidacaoExcepition ex) {
+                        return false;
+                    }
+                });
+            }
+
+            var resultados = tarefas.stream().map(executor::submit).toList();
+            largada.countDown();
+
+            var aceitos = 0;
+            for (var resultado : resultados) {
+                if (resultado.get()) {
+                    aceitos++;
+                }
+            }
+            return aceitos;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Long criarMedico(Especialidade especialidade) {
+        var numero = SEQUENCIA.incrementAndGet();
+        jdbc.update("""
+                insert into medicos(nome, email, crm, especialidade, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values(?, ?, ?, ?, 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """, "Medico " + numero, "medico" + numero + "@voll.med", String.valueOf(numero), especialidade.name());
+        return jdbc.queryForObject("select id from medicos where crm = ?", Long.class, String.valueOf(numero));
+    }
+
+    private List<Long> criarPacientes(int quantidade) {
+        var ids = new ArrayList<Long>();
+        for (int i = 0; i < quantidade; i++) {
+            var numero = SEQUENCIA.incrementAndGet();
+            jdbc.update("""
+                    insert into pacientes(nome, email, cpf, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                    values(?, ?, ?, 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                    """, "Paciente " + numero, "paciente" + numero + "@voll.med", String.valueOf(numero));
+            ids.add(jdbc.queryForObject("select id from pacientes where cpf = ?", Long.class, String.valueOf(numero)));
+        }
+        return ids;
+    }
+
+    private int consultasDoMedicoNoHorario(Long idMedico, LocalDateTime horario) {
+        return jdbc.queryForObject("select count(*) from consultas where medico_id = ? and data = ?", Integer.class, idMedico, horario);
+    }
+
+    private static LocalDate proximo(DayOfWeek dia) {
+        return LocalDate.now().plusDays(1).with(TemporalAdjusters.next(dia));
+    }
+
+}
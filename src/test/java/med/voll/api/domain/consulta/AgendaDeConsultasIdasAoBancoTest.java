@@ -0,0 +1,97 @@
+package med.voll.api.domain.consulta;
+
+import jakarta.persistence.EntityManagerFactory;
+import med.voll.api.domain.ativos.RegistroAtivos;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Conta as instruções enviadas ao banco por um agendamento: a verificação unica e o insert, ou só o insert quando
+ * o indice de ocupação e o RegistroAtivos respondem a verificação em memoria.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:agenda_idas_ao_banco;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class AgendaDeConsultasIdasAoBancoTest {
+
+    @Autowired
+    private AgendaDeConsultas agenda;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
+    @Test
+    void agendamentoComMedicoFazUmaConsultaEUmInsert() {
+        var dia = LocalDate.now().plusDays(1).with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+        jdbc.update("""
+                insert into medicos(nome, email, crm, especialidade, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values('Medico', 'medico@voll.med', '123456', 'CARDIOLOGIA', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """);
+        jdbc.update("""
+                insert into pacientes(nome, email, cpf, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values('Paciente 1', 'paciente1@voll.med', '1', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true),
+                      ('Paciente 2', 'paciente2@voll.med', '2', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """);
+        var idMedico = jdbc.queryForObject("select id from medicos where crm = '123456'", Long.class);
+        var idPaciente1 = jdbc.queryForObject("select id from pacientes where cpf = '1'", Long.class);
+        var idPaciente2 = jdbc.queryForObject("select id from pacientes where cpf = '2'", Long.class);
+
+        //O primeiro agendamento reserva o bloco de ids da sequence, fora da contagem.
+        agenda.agendar(new DadosAgendamentoConsulta(idMedico, idPaciente1, dia.atTime(9, 0), null));
+
+        var estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+        agenda.agendar(new DadosAgendamentoConsulta(idMedico, idPaciente2, dia.atTime(10, 0), null));
+
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(estatisticas.getEntityInsertCount()).isEqualTo(1);
+    }
+
+    @Test
+    void comMedicoEPacienteNoRegistroSoOInsertVaiAoBanco() {
+        var dia = LocalDate.now().plusDays(1).with(TemporalAdjusters.next(DayOfWeek.TUESDAY));
+        jdbc.update("""
+                insert into medicos(nome, email, crm, especialidade, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values('Medico Registro', 'medico.registro@voll.med', '654321', 'CARDIOLOGIA', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """);
+        jdbc.update("""
+                insert into pacientes(nome, email, cpf, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values('Paciente 3', 'paciente3@voll.med', '3', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true),
+                      ('Paciente 4', 'paciente4@voll.med', '4', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """);
+        var idMedico = jdbc.queryForObject("select id from medicos where crm = '654321'", Long.class);
+        var idPaciente3 = jdbc.queryForObject("select id from pacientes where cpf = '3'", Long.class);
+        var idPaciente4 = jdbc.queryForObject("select id from pacientes where cpf = '4'", Long.class);
+
+        //Inseridos direto pelo JDBC: só entram no registro com uma nova carga.
+        registroAtivos.carregar();
+        agenda.agendar(new DadosAgendamentoConsulta(idMedico, idPaciente3, dia.atTime(9, 0), null));
+
+        var estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+        agenda.agendar(new DadosAgendamentoConsulta(idMedico, idPaciente4, dia.atTime(10, 0), null));
+
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(estatisticas.getEntityInsertCount()).isEqualTo(1);
+    }
+
+}
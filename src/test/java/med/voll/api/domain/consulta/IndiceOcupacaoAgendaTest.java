@@ -0,0 +1,148 @@
+package med.voll.api.domain.consulta;
+
+import med.voll.api.domain.ValidacaoExcepition;
+import med.voll.api.domain.consulta.validacoes.ValidadorMedicoComOutraConsultaNoMesmoHorario;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/*
+ * O indice acompanha os agendamentos e cancelamentos desta instancia, inclusive duas consultas no mesmo horario da grade
+ * e o reagendamento de um horario cancelado, trata o que está fora da grade ou do horizonte como possivelmente ocupado
+ * e, quando não conhece uma consulta, o agendamento ainda é recusado pelo banco.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:indice_ocupacao;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "api.agenda.ocupacao.horizonte-dias=30"})
+class IndiceOcupacaoAgendaTest {
+
+    private static final AtomicInteger SEQUENCIA = new AtomicInteger(200000);
+
+    @Autowired
+    private IndiceOcupacaoAgenda indice;
+
+    @Autowired
+    private AgendaDeConsultas agenda;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void agendamentoMarcaEOCancelamentoLiberaOHorario() {
+        var dia = proximo(DayOfWeek.MONDAY);
+        var idMedico = criarMedico();
+        var idPaciente = criarPaciente();
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, dia.atTime(10, 0))).isFalse();
+
+        var consulta = agenda.agendar(new DadosAgendamentoConsulta(idMedico, idPaciente, dia.atTime(10, 0), null));
+
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, dia.atTime(10, 0))).isTrue();
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, dia.atTime(11, 0))).isFalse();
+        assertThat(indice.pacientePossivelmenteComConsultaNoDia(idPaciente, dia)).isTrue();
+        assertThat(indice.pacientePossivelmenteComConsultaNoDia(idPaciente, dia.plusDays(1))).isFalse();
+
+        agenda.cancelar(consulta.id());
+
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, dia.atTime(10, 0))).isFalse();
+        assertThat(indice.pacientePossivelmenteComConsultaNoDia(idPaciente, dia)).isFalse();
+
+        //A consulta cancelada fica na tabela e não impede agendar o mesmo horario de novo.
+        agenda.agendar(new DadosAgendamentoConsulta(idMedico, idPaciente, dia.atTime(10, 0), null));
+        assertThat(jdbc.queryForObject("select cancelada from consultas where id = ?", Boolean.class, consulta.id())).isTrue();
+        assertThat(jdbc.queryForObject("select count(*) from consultas where medico_id = ?", Integer.class, idMedico)).isEqualTo(2);
+    }
+
+    @Test
+    void cancelarUmaDasConsultasDoHorarioMantemAOutra() {
+        var dia = proximo(DayOfWeek.WEDNESDAY);
+        var idMedico = criarMedico();
+
+        var primeira = agenda.agendar(new DadosAgendamentoConsulta(idMedico, criarPaciente(), dia.atTime(10, 0), null));
+        agenda.agendar(new DadosAgendamentoConsulta(idMedico, criarPaciente(), dia.atTime(10, 30), null));
+        agenda.cancelar(primeira.id());
+
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, dia.atTime(10, 30))).isTrue();
+        assertThat(indice.horariosOcupadosDoMedico(idMedico, dia)).isEqualTo(1 << GradeHorarios.horarioDoDia(dia.atTime(10, 30)));
+    }
+
+    @Test
+    void foraDaGradeOuDoHorizonteOHorarioNaoEGarantidoComoLivre() {
+        var idMedico = criarMedico();
+
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, proximo(DayOfWeek.SUNDAY).atTime(10, 0))).isTrue();
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, proximo(DayOfWeek.MONDAY).atTime(20, 0))).isTrue();
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, LocalDate.now().plusDays(60)
+                .with(TemporalAdjusters.next(DayOfWeek.MONDAY)).atTime(10, 0))).isTrue();
+        assertThat(indice.horariosOcupadosDoMedico(idMedico, LocalDate.now().plusDays(60)))
+                .isEqualTo(IndiceOcupacaoAgenda.TODOS_OS_HORARIOS);
+    }
+
+    @Test
+    void consultaQueOIndiceNaoConheceERecusadaPeloBanco() {
+        var horario = proximo(DayOfWeek.TUESDAY).atTime(9, 0);
+        var idMedico = criarMedico();
+
+        //Gravada por fora da aplicação, como por outra instancia.
+        jdbc.update("insert into consultas(id, medico_id, paciente_id, data) values(?, ?, ?, ?)",
+                -SEQUENCIA.incrementAndGet(), idMedico, criarPaciente(), horario);
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, horario)).isFalse();
+
+        assertThatThrownBy(() -> agenda.agendar(new DadosAgendamentoConsulta(idMedico, criarPaciente(), horario, null)))
+                .isInstanceOf(ValidacaoExcepition.class)
+                .hasMessage(ValidadorMedicoComOutraConsultaNoMesmoHorario.MENSAGEM);
+        assertThat(jdbc.queryForObject("select count(*) from consultas where medico_id = ? and data = ?",
+                Integer.class, idMedico, horario)).isEqualTo(1);
+    }
+
+    @Test
+    void notificacaoDoCanalMarcaELiberaOHorario() {
+        var horario = proximo(DayOfWeek.THURSDAY).atTime(14, 0);
+        var idMedico = criarMedico();
+        var idPaciente = criarPaciente();
+
+        //Mesmo conteudo do trigger da V14, como para uma consulta gravada por outra instancia.
+        indice.notificado("I:" + idMedico + ":" + idPaciente + ":" + horario);
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, horario)).isTrue();
+        assertThat(indice.pacientePossivelmenteComConsultaNoDia(idPaciente, horario.toLocalDate())).isTrue();
+
+        indice.notificado("D:" + idMedico + ":" + idPaciente + ":" + horario);
+        assertThat(indice.medicoPossivelmenteOcupado(idMedico, horario)).isFalse();
+        assertThat(indice.pacientePossivelmenteComConsultaNoDia(idPaciente, horario.toLocalDate())).isFalse();
+    }
+
+    private Long criarMedico() {
+        var numero = SEQUENCIA.incrementAndGet();
+        jdbc.update("""
+                insert into medicos(nome, email, crm, especialidade, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values(?, ?, ?, 'CARDIOLOGIA', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """, "Medico " + numero, "medico" + numero + "@voll.med", String.valueOf(numero));
+        return jdbc.queryForObject("select id from medicos where crm = ?", Long.class, String.valueOf(numero));
+    }
+
+    private Long criarPaciente() {
+        var numero = SEQUENCIA.incrementAndGet();
+        jdbc.update("""
+                insert into pacientes(nome, email, cpf, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values(?, ?, ?, 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """, "Paciente " + numero, "paciente" + numero + "@voll.med", String.valueOf(numero));
+        return jdbc.queryForObject("select id from pacientes where cpf = ?", Long.class, String.valueOf(numero));
+    }
+
+    private static LocalDate proximo(DayOfWeek dia) {
+        return LocalDate.now().plusDays(1).with(TemporalAdjusters.next(dia));
+    }
+
+}
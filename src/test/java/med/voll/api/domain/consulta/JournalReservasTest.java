@@ -0,0 +1,62 @@
+package med.voll.api.domain.consulta;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Recuperação do journal depois de uma queda: as reservas sem G/F voltam pendentes e uma linha cortada no meio
+ * da escrita é descartada sem levar as anteriores.
+ * */
+class JournalReservasTest {
+
+    private static final LocalDateTime DATA = LocalDateTime.of(2030, 1, 7, 10, 0);
+
+    @TempDir
+    private Path diretorio;
+
+    @Test
+    void reservasSemConclusaoVoltamPendentesEALinhaCortadaEDescartada() throws IOException {
+        var arquivo = diretorio.resolve("reservas.journal");
+        var journal = abrir(arquivo);
+        var gravada = new DadosReserva("a", SituacaoReserva.PENDENTE, 1L, 1L, DATA, null, null);
+        var pendente = new DadosReserva("b", SituacaoReserva.PENDENTE, 2L, 2L, DATA, null, null);
+        journal.registrarReserva(gravada);
+        journal.registrarReserva(pendente);
+        journal.registrarConcluidas(List.of(gravada.gravada(10L)));
+        journal.fechar();
+
+        //Queda no meio da escrita da proxima linha.
+        Files.writeString(arquivo, "R|c|3|3|2030-01", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        var tamanhoValido = Files.size(arquivo) - "R|c|3|3|2030-01".length();
+
+        var recuperado = abrir(arquivo);
+        assertThat(recuperado.recuperar()).containsExactly(gravada.gravada(10L), pendente);
+        assertThat(Files.size(arquivo)).isEqualTo(tamanhoValido);
+
+        //Sem pendentes o arquivo é zerado.
+        recuperado.registrarConcluidas(List.of(pendente.recusada("Médico ja possui | outra consulta")));
+        recuperado.compactar(List::of);
+        recuperado.fechar();
+        assertThat(Files.size(arquivo)).isZero();
+    }
+
+    private static JournalReservas abrir(Path arquivo) throws IOException {
+        var journal = new JournalReservas();
+        ReflectionTestUtils.setField(journal, "arquivo", arquivo);
+        ReflectionTestUtils.setField(journal, "maxBytes", 1024L);
+        journal.abrir();
+        return journal;
+    }
+
+}
@@ -0,0 +1,83 @@
+package med.voll.api.domain.consulta;
+
+import jakarta.persistence.EntityManagerFactory;
+import med.voll.api.benchmark.GeradorDeDados;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Uma pagina de 100 consultas, com nome do médico e do paciente, custa um unico select: nada de N+1 nas associações LAZY.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:listagem_consultas;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class ListagemDeConsultasIdasAoBancoTest {
+
+    private static final int CONSULTAS = 150;
+
+    @Autowired
+    private ListagemDeConsultas listagem;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private LocalDate inicio;
+    private Statistics estatisticas;
+
+    @BeforeEach
+    void gerarConsultas() {
+        inicio = LocalDate.now().plusDays(1);
+        if (jdbc.queryForObject("select count(*) from consultas", Integer.class) == 0) {
+            GeradorDeDados.gerarMedicos(jdbc, 1);
+            GeradorDeDados.gerarPacientes(jdbc, CONSULTAS);
+            GeradorDeDados.gerarConsultas(jdbc, CONSULTAS, 1, CONSULTAS, inicio.atStartOfDay());
+        }
+
+        estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+    }
+
+    @Test
+    void agendaDoMedicoPaginaComUmSelectPorPagina() {
+        var idMedico = jdbc.queryForObject("select id from medicos", Long.class);
+
+        var primeira = listagem.agendaDoMedico(idMedico, inicio, inicio.plusDays(30), null, 100);
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(primeira.conteudo()).hasSize(100);
+        assertThat(primeira.conteudo()).allSatisfy(c -> assertThat(c.nomePaciente()).isNotNull());
+        assertThat(primeira.proximoCursor()).isNotNull();
+
+        estatisticas.clear();
+        var segunda = listagem.agendaDoMedico(idMedico, inicio, inicio.plusDays(30), primeira.proximoCursor(), 100);
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(segunda.conteudo()).hasSize(CONSULTAS - 100);
+        assertThat(segunda.conteudo().get(0).data()).isAfter(primeira.conteudo().get(99).data());
+        assertThat(segunda.proximoCursor()).isNull();
+    }
+
+    @Test
+    void consultasDoDiaPaginaComUmSelect() {
+        var pagina = listagem.consultasDoDia(inicio, null, 100);
+
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(pagina.conteudo()).hasSize(24);
+        assertThat(pagina.proximoCursor()).isNull();
+    }
+
+}
@@ -0,0 +1,78 @@
+package med.voll.api.infra.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+import med.voll.api.domain.medico.MedicoRepository;
+import med.voll.api.domain.paciente.PacienteRepository;
+import med.voll.api.domain.usuario.UsuarioRepository;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Buscas repetidas de medicos, pacientes e usuarios, cada uma em uma sessão nova, saem do cache de segundo nivel
+ * e do cache de consultas sem nenhuma instrução SQL.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cache_segundo_nivel;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class CacheSegundoNivelTest {
+
+    @Autowired
+    private MedicoRepository medicoRepository;
+
+    @Autowired
+    private PacienteRepository pacienteRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void buscasRepetidasNaoVaoAoBanco() {
+        jdbc.update("""
+                insert into medicos(nome, email, crm, especialidade, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values('Medico', 'medico@voll.med', '123456', 'CARDIOLOGIA', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """);
+        jdbc.update("""
+                insert into pacientes(nome, email, cpf, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values('Paciente', 'paciente@voll.med', '1', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """);
+        jdbc.update("insert into usuarios(login, senha) values('cache@voll.med', 'senha')");
+        var idMedico = jdbc.queryForObject("select id from medicos where crm = '123456'", Long.class);
+        var idPaciente = jdbc.queryForObject("select id from pacientes where cpf = '1'", Long.class);
+
+        //A primeira rodada carrega as regiões.
+        buscar(idMedico, idPaciente);
+
+        var estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+        buscar(idMedico, idPaciente);
+
+        assertThat(estatisticas.getPrepareStatementCount()).isZero();
+        assertThat(estatisticas.getQueryCacheHitCount()).isEqualTo(3);
+        assertThat(estatisticas.getDomainDataRegionStatistics(CacheSegundoNivel.REGIAO_USUARIOS).getHitCount()).isEqualTo(1);
+    }
+
+    //Fora de transação cada chamada usa um EntityManager novo, sem o cache de primeiro nivel da anterior.
+    private void buscar(Long idMedico, Long idPaciente) {
+        assertThat(medicoRepository.findById(idMedico)).isPresent();
+        assertThat(pacienteRepository.findById(idPaciente)).isPresent();
+        assertThat(medicoRepository.findAtivoById(idMedico)).isTrue();
+        assertThat(pacienteRepository.findAtivoById(idPaciente)).isTrue();
+        assertThat(usuarioRepository.findByLogin("cache@voll.med")).isNotNull();
+    }
+
+}
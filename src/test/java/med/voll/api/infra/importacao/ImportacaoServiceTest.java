@@ -0,0 +1,71 @@
+package med.voll.api.infra.importacao;
+
+import med.voll.api.domain.ativos.RegistroAtivos;
+import med.voll.api.domain.medico.MedicoRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Importação de medicos em CSV com blocos de 2 linhas: as linhas invalidas, repetidas no arquivo ou já cadastradas
+ * voltam no relatorio pelo numero da linha e as demais ficam visiveis para o agendamento logo depois do commit.
+ * */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:importacao;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.show-sql=false",
+        "api.importacao.bloco=2"})
+class ImportacaoServiceTest {
+
+    @Autowired
+    private ImportacaoService importacao;
+
+    @Autowired
+    private MedicoRepository medicoRepository;
+
+    @Autowired
+    private RegistroAtivos registroAtivos;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void linhasRecusadasVoltamNoRelatorioEAsDemaisSaoCadastradas() throws IOException {
+        jdbc.update("""
+                insert into medicos(nome, email, crm, especialidade, logradouro, bairro, cep, uf, cidade, telefone, ativo)
+                values('Medico', 'existente@voll.med', '900001', 'CARDIOLOGIA', 'rua', 'bairro', '00000000', 'SP', 'Sao Paulo', '0', true)
+                """);
+
+        var csv = """
+                nome,email,telefone,crm,especialidade,logradouro,bairro,cep,cidade,uf,numero
+                "Silva, Ana",ana@voll.med,11999999999,900002,CARDIOLOGIA,rua,bairro,01234567,Sao Paulo,SP,10
+                Bruno,bruno@voll.med,11999999999,12,ORTOPEDIA,rua,bairro,01234567,Sao Paulo,SP,
+                Carla,carla@voll.med,11999999999,900002,ORTOPEDIA,rua,bairro,01234567,Sao Paulo,SP,
+                Davi,davi@voll.med,11999999999,900001,ORTOPEDIA,rua,bairro,01234567,Sao Paulo,SP,
+                Eva,eva@voll.med,11999999999,900003,PEDIATRIA,rua,bairro,01234567,Sao Paulo,SP,
+                Fabio,fabio@voll.med,11999999999,900004,DERMATOLOGIA,rua,bairro,01234567,Sao Paulo,SP,
+                """;
+
+        var resultado = importacao.importarMedicos(FormatoImportacao.CSV, new StringReader(csv));
+
+        assertThat(resultado.linhas()).isEqualTo(6);
+        assertThat(resultado.importadas()).isEqualTo(2);
+        assertThat(resultado.erros()).extracting(DadosErroImportacao::linha).containsExactly(3, 4, 5, 6);
+        assertThat(resultado.erros().get(0).erro()).startsWith("crm:");
+        assertThat(resultado.erros().get(3).erro()).startsWith("Linha inválida:");
+
+        var idAna = jdbc.queryForObject("select id from medicos where crm = '900002'", Long.class);
+        assertThat(jdbc.queryForObject("select nome from medicos where id = ?", String.class, idAna)).isEqualTo("Silva, Ana");
+        assertThat(registroAtivos.medicoAtivo(idAna)).isTrue();
+        assertThat(medicoRepository.findAtivoById(idAna)).isTrue();
+    }
+
+}